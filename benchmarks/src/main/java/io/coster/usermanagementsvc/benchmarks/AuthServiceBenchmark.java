@@ -0,0 +1,134 @@
+package io.coster.usermanagementsvc.benchmarks;
+
+import io.coster.usermanagementsvc.contract.LoginRequest;
+import io.coster.usermanagementsvc.contract.PasswordResetRequest;
+import io.coster.usermanagementsvc.contract.RegistrationRequest;
+import io.coster.usermanagementsvc.services.AuthService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.coster.usermanagementsvc.benchmarks.EmbeddedService.PASSWORD;
+import static io.coster.usermanagementsvc.benchmarks.EmbeddedService.token;
+import static io.coster.usermanagementsvc.benchmarks.EmbeddedService.userId;
+
+/**
+ * End-to-end cost of the AuthService operations against a seeded in-memory database, excluding HTTP.
+ * Each benchmark method runs in its own fork, so operations replacing tokens do not affect each other.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class AuthServiceBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int users;
+
+    @Param({"10"})
+    private int bcryptStrength;
+
+    @Param({"true"})
+    private boolean tokenCache;
+
+    private EmbeddedService service;
+    private AuthService authService;
+    private final AtomicLong registrations = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = EmbeddedService.start("auth-benchmark",
+                "auth.password.bcrypt.strength=" + bcryptStrength,
+                "auth.token.cache.enabled=" + tokenCache);
+        service.seedUsers(users);
+        authService = service.getBean(AuthService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.close();
+    }
+
+    @Benchmark
+    public boolean validate() {
+        int index = ThreadLocalRandom.current().nextInt(users);
+        return authService.validate(userId(index), token(index));
+    }
+
+    @Benchmark
+    public boolean validateUnknownToken() {
+        int index = ThreadLocalRandom.current().nextInt(users);
+        return authService.validate(userId(index), "unknown-token");
+    }
+
+    @Benchmark
+    public String login() {
+        int index = ThreadLocalRandom.current().nextInt(users);
+        return authService.login(LoginRequest.builder()
+                .emailAddr(userId(index))
+                .password(PASSWORD).build());
+    }
+
+    @Benchmark
+    public String register() {
+        return authService.register(RegistrationRequest.builder()
+                .emailAddr("new" + registrations.incrementAndGet() + "@bench.coster.io")
+                .firstName("New")
+                .lastName("User")
+                .password(PASSWORD).build());
+    }
+
+    @Benchmark
+    public String resetPassword(ResetState state) {
+        int index = state.nextUser();
+        String newToken = authService.resetPassword(PasswordResetRequest.builder()
+                .userId(userId(index))
+                .token(state.currentTokens.getOrDefault(index, token(index)))
+                .password(PASSWORD).build());
+        state.currentTokens.put(index, newToken);
+        return newToken;
+    }
+
+    /**
+     * Gives every thread a disjoint set of users, so that concurrent resets never race for the same token.
+     */
+    @State(Scope.Thread)
+    public static class ResetState {
+
+        private final Map<Integer, String> currentTokens = new HashMap<>();
+        private int offset;
+        private int stride;
+        private int usersPerThread;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(AuthServiceBenchmark benchmark, ThreadParams threadParams) {
+            offset = threadParams.getThreadIndex();
+            stride = threadParams.getThreadCount();
+            usersPerThread = benchmark.users / stride;
+        }
+
+        int nextUser() {
+            return offset + stride * (next++ % usersPerThread);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package io.coster.usermanagementsvc.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks matching {@code -Dbenchmarks=<regex>} once for each of the thread counts in
+ * {@code -Dthreads=<n,m,...>}, writing JSON results to target/jmh-result-&lt;threads&gt;t.json.
+ * {@code -Dusers=<n,m,...>} overrides the dataset sizes of {@link AuthServiceBenchmark}, and {@code -Dprofilers=gc}
+ * adds the allocation rate and bytes allocated per operation.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = System.getProperty("benchmarks", ".*");
+        String users = System.getProperty("users", "");
+        String profilers = System.getProperty("profilers", "");
+        for (String threads : System.getProperty("threads", "1").split(",")) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("target/jmh-result-" + threads.trim() + "t.json");
+            if (!users.isEmpty()) {
+                options.param("users", users.split(","));
+            }
+            if (profilers.contains("gc")) {
+                options.addProfiler(GCProfiler.class);
+            }
+            new Runner(options.build()).run();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package io.coster.usermanagementsvc.benchmarks;
+
+import io.coster.usermanagementsvc.UserManagementSvcApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Boots the user management service against an in-memory H2 database. The notification outbox dispatcher is
+ * disabled, so notifications are only written to the outbox table and never sent anywhere.
+ */
+public class EmbeddedService implements AutoCloseable {
+
+    public static final String PASSWORD = "benchmark-password";
+
+    private static final int SEED_BATCH_SIZE = 10_000;
+
+    private final ConfigurableApplicationContext context;
+
+    private EmbeddedService(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Starts the service with the given {@code key=value} properties, which override the embedded defaults.
+     */
+    public static EmbeddedService start(String databaseName, String... properties) {
+        Map<String, String> allProperties = new LinkedHashMap<>();
+        allProperties.put("spring.datasource.url", "jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1");
+        allProperties.put("spring.datasource.platform", "h2");
+        allProperties.put("spring.jpa.database-platform", "org.hibernate.dialect.H2Dialect");
+        allProperties.put("server.port", "0");
+        allProperties.put("notification.service.url", "http://localhost:1");
+        allProperties.put("notification.outbox.dispatcher.enabled", "false");
+        allProperties.put("auth.token.reaper.enabled", "false");
+        for (String property : properties) {
+            String[] keyValue = property.split("=", 2);
+            allProperties.put(keyValue[0], keyValue[1]);
+        }
+
+        // passed as command line arguments, so that they take precedence over application.properties
+        String[] args = allProperties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(UserManagementSvcApplication.class)
+                .run(args);
+        return new EmbeddedService(context);
+    }
+
+    public static String userId(int index) {
+        return "user" + index + "@bench.coster.io";
+    }
+
+    public static String token(int index) {
+        return "bench-token-" + index;
+    }
+
+    public int getPort() {
+        return Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * Inserts users with ids {@link #userId(int)} for 0 &lt;= index &lt; count, all with password {@link #PASSWORD}
+     * and a valid token {@link #token(int)}.
+     */
+    public void seedUsers(int count) {
+        JdbcTemplate jdbcTemplate = getBean(JdbcTemplate.class);
+        String password = getBean(PasswordEncoder.class).encode(PASSWORD);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Timestamp expiry = Timestamp.valueOf(LocalDateTime.now().plusDays(30));
+
+        for (int start = 0; start < count; start += SEED_BATCH_SIZE) {
+            List<Object[]> users = new ArrayList<>(SEED_BATCH_SIZE);
+            List<Object[]> tokens = new ArrayList<>(SEED_BATCH_SIZE);
+            for (int i = start; i < Math.min(count, start + SEED_BATCH_SIZE); i++) {
+                users.add(new Object[]{userId(i), "Bench", "User", password, now, now});
+                tokens.add(new Object[]{userId(i), token(i), now, expiry});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO users (email_addr, first_name, last_name, password, registered, last_active) "
+                    + "VALUES (?, ?, ?, ?, ?, ?)", users);
+            jdbcTemplate.batchUpdate("INSERT INTO auth_tokens (user_id, auth_token, issued, expiry) VALUES (?, ?, ?, ?)", tokens);
+        }
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,66 @@
+package io.coster.usermanagementsvc.benchmarks;
+
+import io.coster.usermanagementsvc.security.Argon2CostEncoder;
+import io.coster.usermanagementsvc.security.BCryptCostEncoder;
+import io.coster.usermanagementsvc.security.CostAwarePasswordEncoder;
+import io.coster.usermanagementsvc.security.Pbkdf2CostEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class PasswordEncodingBenchmark {
+
+    private static final String PASSWORD = "benchmark-password";
+
+    @Param({"bcrypt:10", "bcrypt:12", "pbkdf2:185000", "argon2:2"})
+    private String encoding;
+
+    private CostAwarePasswordEncoder encoder;
+    private String encoded;
+
+    @Setup
+    public void setUp() {
+        String[] parts = encoding.split(":");
+        int cost = Integer.parseInt(parts[1]);
+        switch (parts[0]) {
+            case "bcrypt":
+                encoder = new BCryptCostEncoder(cost);
+                break;
+            case "pbkdf2":
+                encoder = new Pbkdf2CostEncoder(cost);
+                break;
+            case "argon2":
+                encoder = new Argon2CostEncoder(cost, 19456, 1);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown encoding: " + encoding);
+        }
+        encoded = encoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public String encode() {
+        return encoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return encoder.matches(PASSWORD, encoded);
+    }
+}
@@ -0,0 +1,56 @@
+package io.coster.usermanagementsvc.benchmarks;
+
+import io.coster.usermanagementsvc.services.tokens.SignedToken;
+import io.coster.usermanagementsvc.services.tokens.SignedTokenCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenGenerationBenchmark {
+
+    private static final String SIGNING_KEY = "bench:YmVuY2htYXJrLXNpZ25pbmcta2V5LWZvci10b2tlbnM=";
+
+    private SignedTokenCodec codec;
+    private String signedToken;
+
+    @Setup
+    public void setUp() {
+        codec = new SignedTokenCodec(SIGNING_KEY, "bench");
+        signedToken = codec.issue("user1@bench.coster.io", Instant.now(), Instant.now().plus(24, ChronoUnit.HOURS));
+    }
+
+    @Benchmark
+    public String randomUuid() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public String issueSigned() {
+        Instant now = Instant.now();
+        return codec.issue("user1@bench.coster.io", now, now.plus(24, ChronoUnit.HOURS));
+    }
+
+    @Benchmark
+    public Optional<SignedToken> verifySigned() {
+        return codec.verify(signedToken);
+    }
+}
@@ -0,0 +1,111 @@
+package io.coster.usermanagementsvc.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.coster.usermanagementsvc.contract.AuthenticationResponse;
+import io.coster.usermanagementsvc.contract.BatchValidationRequest;
+import io.coster.usermanagementsvc.contract.ValidationCodec;
+import io.coster.usermanagementsvc.contract.ValidationRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server side cost of one validation request apart from the validation itself: reading the request, checking it and
+ * writing the response, for JSON the way {@code AuthController} does it (Jackson binding, bean validation, response
+ * builders) and for {@link ValidationCodec}. Run with {@code -Dprofilers=gc} for allocations per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationCodecBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    private ObjectMapper objectMapper;
+    private Validator validator;
+
+    private byte[] json;
+    private byte[] batchJson;
+    private byte[] binary;
+    private byte[] batchBinary;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper();
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+        List<ValidationRequest> requests = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            requests.add(new ValidationRequest("user" + i + "@bench.coster.io", UUID.randomUUID().toString()));
+        }
+        json = objectMapper.writeValueAsBytes(requests.get(0));
+        batchJson = objectMapper.writeValueAsBytes(new BatchValidationRequest(requests));
+        binary = ValidationCodec.encodeRequest(requests.get(0).getUserId(), requests.get(0).getAuthToken());
+        batchBinary = ValidationCodec.encodeBatchRequest(requests);
+    }
+
+    @Benchmark
+    public byte[] json() throws IOException {
+        ValidationRequest request = validated(objectMapper.readValue(json, ValidationRequest.class));
+        return objectMapper.writeValueAsBytes(AuthenticationResponse.builder()
+                .valid(true)
+                .userId(request.getUserId())
+                .authToken(request.getAuthToken()).build());
+    }
+
+    @Benchmark
+    public byte[] binary() {
+        ValidationRequest request = ValidationCodec.decodeRequest(binary);
+        return ValidationCodec.encodeResponse(!request.getUserId().isEmpty());
+    }
+
+    @Benchmark
+    public byte[] jsonBatch() throws IOException {
+        List<ValidationRequest> requests = validated(objectMapper.readValue(batchJson, BatchValidationRequest.class))
+                .getRequests();
+        List<AuthenticationResponse> responses = new ArrayList<>(requests.size());
+        for (ValidationRequest request : requests) {
+            responses.add(AuthenticationResponse.builder()
+                    .valid(true)
+                    .userId(request.getUserId())
+                    .authToken(request.getAuthToken()).build());
+        }
+        return objectMapper.writeValueAsBytes(responses);
+    }
+
+    @Benchmark
+    public byte[] binaryBatch() {
+        List<ValidationRequest> requests = ValidationCodec.decodeBatchRequest(batchBinary);
+        return ValidationCodec.encodeBatchResponse(Collections.nCopies(requests.size(), Boolean.TRUE));
+    }
+
+    private <T> T validated(T request) {
+        Set<ConstraintViolation<T>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,261 @@
+package io.coster.usermanagementsvc.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import io.coster.usermanagementsvc.benchmarks.EmbeddedService;
+import io.coster.usermanagementsvc.contract.AuthenticationResponse;
+import io.coster.usermanagementsvc.contract.LoginRequest;
+import io.coster.usermanagementsvc.contract.PasswordResetRequest;
+import io.coster.usermanagementsvc.contract.RegistrationRequest;
+import io.coster.usermanagementsvc.contract.ValidationRequest;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlMatching;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+
+/**
+ * Boots the service on H2 with notification-svc stubbed by WireMock, replays a mix of register, login, validate,
+ * forgotpwd and pwdreset requests at a fixed arrival rate, and reports latency percentiles per endpoint.
+ * <p>
+ * Latency is measured from the time a request was scheduled to be sent, not from when it was actually sent,
+ * so that a stalled service shows up in the percentiles instead of silently lowering the request rate.
+ * <p>
+ * Configured with system properties: {@code rate} (requests per second), {@code duration} and {@code warmup}
+ * (seconds), {@code mix}, {@code users} (seeded accounts), {@code maxInFlight} and {@code bcryptStrength}.
+ * Program arguments of the form {@code key=value} are passed on to the service, e.g.
+ * {@code spring.datasource.hikari.maximum-pool-size=8 server.tomcat.max-threads=50}.
+ */
+public class LoadTestHarness {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final int rate;
+    private final Duration duration;
+    private final Duration warmup;
+    private final TrafficMix mix;
+    private final int users;
+    private final Semaphore inFlight;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final Map<Integer, String> currentTokens = new ConcurrentHashMap<>();
+    private final AtomicLong registrations = new AtomicLong();
+    private final Map<Operation, AtomicInteger> nextUser = new EnumMap<>(Operation.class);
+
+    private String baseUrl;
+
+    private LoadTestHarness() {
+        this.rate = Integer.getInteger("rate", 200);
+        this.duration = Duration.ofSeconds(Long.getLong("duration", 60L));
+        this.warmup = Duration.ofSeconds(Long.getLong("warmup", 10L));
+        this.mix = new TrafficMix(System.getProperty("mix", "validate:80,login:10,register:5,forgotpwd:3,pwdreset:2"));
+        this.users = Integer.getInteger("users", 10_000);
+        this.inFlight = new Semaphore(Integer.getInteger("maxInFlight", 1000));
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3));
+            errors.put(operation, new LongAdder());
+            nextUser.put(operation, new AtomicInteger());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadTestHarness().run(args);
+        System.exit(0);
+    }
+
+    private void run(String[] serviceProperties) throws Exception {
+        WireMockServer notificationService = new WireMockServer(wireMockConfig().dynamicPort());
+        notificationService.start();
+        notificationService.stubFor(post(urlMatching("/notification/.*")).willReturn(aResponse().withStatus(200)));
+
+        List<String> properties = new ArrayList<>(Arrays.asList(
+                "notification.service.url=http://localhost:" + notificationService.port(),
+                "notification.outbox.dispatcher.enabled=true",
+                // all traffic comes from one address
+                "auth.throttle.enabled=false",
+                "auth.password.bcrypt.strength=" + Integer.getInteger("bcryptStrength", 10)));
+        properties.addAll(Arrays.asList(serviceProperties));
+
+        try (EmbeddedService service = EmbeddedService.start("loadtest", properties.toArray(new String[0]))) {
+            service.seedUsers(users);
+            baseUrl = "http://localhost:" + service.getPort() + "/auth/";
+            System.out.printf("Running %s at %d req/s for %s (warmup %s) against %d users%n",
+                    mix, rate, duration, warmup, users);
+            drive();
+            report(System.out);
+            writeHistograms(Paths.get("target", "loadtest"));
+        } finally {
+            notificationService.stop();
+        }
+    }
+
+    private void drive() throws InterruptedException {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+
+        for (long intended = start; intended < end; intended += intervalNanos) {
+            long delay = intended - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            inFlight.acquire();
+            Operation operation = mix.next();
+            boolean measured = intended >= measureFrom;
+            long scheduledAt = intended;
+            CompletableFuture<?> future = send(operation)
+                    .whenComplete((ok, failure) -> {
+                        inFlight.release();
+                        if (measured) {
+                            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduledAt);
+                            histograms.get(operation).recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+                            if (failure != null || !ok) {
+                                errors.get(operation).increment();
+                            }
+                        }
+                    });
+            pending.add(future);
+            pending.removeIf(CompletableFuture::isDone);
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+    }
+
+    /**
+     * Sends one request of the operation, completing with whether it succeeded. Each operation works on its own
+     * slice of the seeded users, so that e.g. logins never invalidate the tokens used by the validate traffic.
+     */
+    private CompletableFuture<Boolean> send(Operation operation) {
+        int slice = users / Operation.values().length;
+        int index = operation.ordinal() * slice + Math.floorMod(nextUser.get(operation).getAndIncrement(), slice);
+        String userId = EmbeddedService.userId(index);
+        switch (operation) {
+            case VALIDATE:
+                return postJson("validate", new ValidationRequest(userId, EmbeddedService.token(index)), index, false);
+            case LOGIN:
+                return postJson("login", LoginRequest.builder()
+                        .emailAddr(userId)
+                        .password(EmbeddedService.PASSWORD).build(), index, false);
+            case REGISTER:
+                return postJson("register", RegistrationRequest.builder()
+                        .emailAddr("load" + registrations.incrementAndGet() + "@loadtest.coster.io")
+                        .firstName("Load")
+                        .lastName("Test")
+                        .password(EmbeddedService.PASSWORD).build(), index, false);
+            case FORGOT_PASSWORD:
+                HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "forgotpwd?id=" + userId))
+                        .timeout(REQUEST_TIMEOUT).GET().build();
+                return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                        .thenApply(response -> response.statusCode() == 200);
+            case PASSWORD_RESET:
+                return postJson("pwdreset", PasswordResetRequest.builder()
+                        .userId(userId)
+                        .token(currentTokens.getOrDefault(index, EmbeddedService.token(index)))
+                        .password(EmbeddedService.PASSWORD).build(), index, true);
+            default:
+                throw new IllegalArgumentException("Unsupported operation: " + operation);
+        }
+    }
+
+    private CompletableFuture<Boolean> postJson(String endpoint, Object body, int userIndex, boolean trackToken) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(baseUrl + endpoint))
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        return false;
+                    }
+                    if (trackToken) {
+                        currentTokens.put(userIndex, readToken(response.body()));
+                    }
+                    return true;
+                });
+    }
+
+    private String readToken(byte[] body) {
+        try {
+            return objectMapper.readValue(body, AuthenticationResponse.class).getAuthToken();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreadable authentication response", e);
+        }
+    }
+
+    private void report(PrintStream out) {
+        double seconds = duration.getSeconds();
+        out.printf("%n%-10s %9s %8s %8s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p999 ms", "max ms");
+        for (Operation operation : Operation.values()) {
+            if (!mix.contains(operation)) {
+                continue;
+            }
+            Histogram histogram = histograms.get(operation);
+            out.printf("%-10s %9d %8d %8.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    operation.getEndpoint(),
+                    histogram.getTotalCount(),
+                    errors.get(operation).sum(),
+                    histogram.getTotalCount() / seconds,
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()));
+        }
+    }
+
+    private void writeHistograms(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Operation operation : Operation.values()) {
+            if (!mix.contains(operation)) {
+                continue;
+            }
+            try (PrintStream out = new PrintStream(directory.resolve(operation.getEndpoint() + ".hgrm").toFile())) {
+                histograms.get(operation).outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        System.out.println("Percentile distributions (ms) written to " + directory.toAbsolutePath());
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
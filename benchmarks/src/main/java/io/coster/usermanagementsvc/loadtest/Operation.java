@@ -0,0 +1,32 @@
+package io.coster.usermanagementsvc.loadtest;
+
+/**
+ * The endpoints exercised by the load test, in the order they are reported.
+ */
+public enum Operation {
+
+    VALIDATE("validate"),
+    LOGIN("login"),
+    REGISTER("register"),
+    FORGOT_PASSWORD("forgotpwd"),
+    PASSWORD_RESET("pwdreset");
+
+    private final String endpoint;
+
+    Operation(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public static Operation fromEndpoint(String endpoint) {
+        for (Operation operation : values()) {
+            if (operation.endpoint.equals(endpoint)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown endpoint in traffic mix: " + endpoint);
+    }
+}
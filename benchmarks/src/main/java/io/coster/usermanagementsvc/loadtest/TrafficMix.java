@@ -0,0 +1,48 @@
+package io.coster.usermanagementsvc.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Weighted choice of operations, parsed from a spec such as {@code validate:80,login:10,register:5,forgotpwd:3,pwdreset:2}.
+ */
+public class TrafficMix {
+
+    private final Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+    private final int totalWeight;
+
+    public TrafficMix(String spec) {
+        int total = 0;
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split(":");
+            int weight = Integer.parseInt(parts[1].trim());
+            weights.merge(Operation.fromEndpoint(parts[0].trim()), weight, Integer::sum);
+            total += weight;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Traffic mix must have a positive total weight: " + spec);
+        }
+        this.totalWeight = total;
+    }
+
+    public Operation next() {
+        int choice = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> entry : weights.entrySet()) {
+            choice -= entry.getValue();
+            if (choice < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Weights do not add up to " + totalWeight);
+    }
+
+    public boolean contains(Operation operation) {
+        return weights.containsKey(operation);
+    }
+
+    @Override
+    public String toString() {
+        return weights.toString();
+    }
+}
@@ -0,0 +1,240 @@
+package io.coster.usermanagementsvc.startup;
+
+import io.coster.usermanagementsvc.UserManagementSvcApplication;
+import org.h2.tools.RunScript;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the time from launching a new service JVM until its first successful {@code /auth/validate} response,
+ * which includes JVM startup, context refresh and whatever the first request has to initialize.
+ * <p>
+ * Modes: {@code default} (application.properties), {@code prod} (the prod profile) and {@code prod-cds} (the prod
+ * profile with an AppCDS archive recorded by a training run first). The service runs on a file based H2 database
+ * seeded with one user and token.
+ * <p>
+ * Configured with system properties: {@code modes} (comma separated), {@code runs} (per mode) and {@code timeout}
+ * (seconds per start). Per run results are appended to {@code target/startup/results.csv}.
+ */
+public class StartupBenchmark {
+
+    private static final String USER_ID = "startup@bench.coster.io";
+    private static final String TOKEN = "startup-token";
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(10);
+
+    private final List<String> modes;
+    private final int runs;
+    private final Duration timeout;
+    private final Path workDirectory = Paths.get("target", "startup").toAbsolutePath();
+    private final String classpath;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+    private StartupBenchmark() {
+        this.modes = Arrays.asList(System.getProperty("modes", "default,prod,prod-cds").split(","));
+        this.runs = Integer.getInteger("runs", 5);
+        this.timeout = Duration.ofSeconds(Long.getLong("timeout", 120L));
+        // class data sharing can only archive classes loaded from jars
+        this.classpath = Arrays.stream(System.getProperty("java.class.path").split(File.pathSeparator))
+                .filter(entry -> entry.endsWith(".jar"))
+                .collect(Collectors.joining(File.pathSeparator));
+    }
+
+    public static void main(String[] args) throws Exception {
+        new StartupBenchmark().run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        Files.createDirectories(workDirectory);
+        String databaseUrl = seedDatabase();
+
+        Map<String, List<Long>> results = new LinkedHashMap<>();
+        for (String mode : modes) {
+            List<String> jvmArgs = new ArrayList<>();
+            List<String> serviceArgs = new ArrayList<>(Arrays.asList(
+                    "--spring.datasource.url=" + databaseUrl,
+                    "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                    "--notification.service.url=http://localhost:1",
+                    "--notification.outbox.dispatcher.enabled=false"));
+            switch (mode) {
+                case "default":
+                    break;
+                case "prod":
+                    serviceArgs.add("--spring.profiles.active=prod");
+                    break;
+                case "prod-cds":
+                    serviceArgs.add("--spring.profiles.active=prod");
+                    jvmArgs.add("-XX:SharedArchiveFile=" + train(serviceArgs));
+                    jvmArgs.add("-Xshare:auto");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown mode: " + mode);
+            }
+
+            List<Long> millis = new ArrayList<>();
+            for (int run = 0; run < runs; run++) {
+                millis.add(timeToFirstValidation(mode + "-" + run, jvmArgs, serviceArgs));
+                System.out.printf("%s run %d: %d ms%n", mode, run, millis.get(run));
+            }
+            results.put(mode, millis);
+        }
+
+        report(results, System.out);
+        writeResults(results, workDirectory.resolve("results.csv"));
+    }
+
+    /**
+     * Creates the schema of the prod profile in a new H2 database, with a user and a valid token.
+     */
+    private String seedDatabase() throws IOException, SQLException {
+        Path database = workDirectory.resolve("db");
+        Files.deleteIfExists(workDirectory.resolve("db.mv.db"));
+        String url = "jdbc:h2:file:" + database + ";MODE=PostgreSQL";
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Reader schema = new InputStreamReader(
+                     UserManagementSvcApplication.class.getResourceAsStream("/db/schema-postgres.sql"), StandardCharsets.UTF_8);
+             Statement statement = connection.createStatement()) {
+            RunScript.execute(connection, schema);
+            statement.execute("INSERT INTO users (email_addr, first_name, last_name, password, registered, last_active) "
+                    + "VALUES ('" + USER_ID + "', 'Startup', 'Benchmark', 'unused', now(), now())");
+            statement.execute("INSERT INTO auth_tokens (user_id, auth_token, issued, expiry) "
+                    + "VALUES ('" + USER_ID + "', '" + TOKEN + "', now(), dateadd('YEAR', 10, now()))");
+        }
+        return url;
+    }
+
+    /**
+     * Records the classes loaded up to the first successful validation, and dumps them into a class data archive.
+     */
+    private Path train(List<String> serviceArgs) throws IOException, InterruptedException {
+        Path classList = workDirectory.resolve("classes.lst");
+        Path archive = workDirectory.resolve("app.jsa");
+        long millis = timeToFirstValidation("prod-cds-training",
+                Collections.singletonList("-XX:DumpLoadedClassList=" + classList), serviceArgs);
+        System.out.printf("prod-cds training run: %d ms%n", millis);
+
+        Process dump = new ProcessBuilder(javaExecutable(), "-Xshare:dump",
+                "-XX:SharedClassListFile=" + classList, "-XX:SharedArchiveFile=" + archive, "-cp", classpath)
+                .redirectErrorStream(true)
+                .redirectOutput(workDirectory.resolve("prod-cds-dump.log").toFile())
+                .start();
+        if (dump.waitFor() != 0) {
+            throw new IllegalStateException("Dumping the class data archive failed, see " + workDirectory.resolve("prod-cds-dump.log"));
+        }
+        return archive;
+    }
+
+    private long timeToFirstValidation(String name, List<String> jvmArgs, List<String> serviceArgs)
+            throws IOException, InterruptedException {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(javaExecutable());
+        command.addAll(jvmArgs);
+        command.addAll(Arrays.asList("-cp", classpath, UserManagementSvcApplication.class.getName(), "--server.port=" + port));
+        command.addAll(serviceArgs);
+
+        long start = System.nanoTime();
+        Process service = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(workDirectory.resolve(name + ".log").toFile())
+                .start();
+        try {
+            HttpRequest validation = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/auth/validate"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"userId\":\"" + USER_ID + "\",\"authToken\":\"" + TOKEN + "\"}"))
+                    .build();
+            long deadline = start + timeout.toNanos();
+            while (System.nanoTime() < deadline) {
+                if (!service.isAlive()) {
+                    throw new IllegalStateException("Service exited with " + service.exitValue() + ", see " + workDirectory.resolve(name + ".log"));
+                }
+                if (isValid(validation)) {
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                }
+                Thread.sleep(POLL_INTERVAL.toMillis());
+            }
+            throw new IllegalStateException("No successful validation within " + timeout + ", see " + workDirectory.resolve(name + ".log"));
+        } finally {
+            // a graceful shutdown, so that a class list being recorded is complete
+            service.destroy();
+            if (!service.waitFor(30, TimeUnit.SECONDS)) {
+                service.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private boolean isValid(HttpRequest validation) throws InterruptedException {
+        try {
+            HttpResponse<String> response = httpClient.send(validation, HttpResponse.BodyHandlers.ofString());
+            return response.statusCode() == 200 && response.body().contains("\"valid\":true");
+        } catch (IOException e) {
+            // not listening yet
+            return false;
+        }
+    }
+
+    private void report(Map<String, List<Long>> results, PrintStream out) {
+        out.printf("%n%-10s %8s %8s %8s %8s%n", "mode", "min", "median", "mean", "max");
+        results.forEach((mode, millis) -> {
+            List<Long> sorted = millis.stream().sorted().collect(Collectors.toList());
+            out.printf("%-10s %8d %8d %8.0f %8d%n", mode, sorted.get(0), sorted.get(sorted.size() / 2),
+                    sorted.stream().mapToLong(Long::longValue).average().orElse(0), sorted.get(sorted.size() - 1));
+        });
+    }
+
+    private void writeResults(Map<String, List<Long>> results, Path file) throws IOException {
+        boolean exists = Files.exists(file);
+        long timestamp = System.currentTimeMillis();
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            if (!exists) {
+                out.println("timestamp,mode,run,millis");
+            }
+            results.forEach((mode, millis) -> {
+                for (int run = 0; run < millis.size(); run++) {
+                    out.printf("%d,%s,%d,%d%n", timestamp, mode, run, millis.get(run));
+                }
+            });
+        }
+        System.out.println("Results appended to " + file);
+    }
+
+    private static String javaExecutable() {
+        return Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
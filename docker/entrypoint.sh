@@ -0,0 +1,34 @@
+#!/bin/sh
+# Starts the service, with the AppCDS archive at $CDS_ARCHIVE if it exists.
+#
+# With CDS_TRAINING=true, the service is started once to record the classes loaded up to the first /auth/validate
+# request, which are then dumped into $CDS_ARCHIVE. The archive is only valid for this image, so mount its
+# directory as a volume, run the training against a real database, and reuse it for every container of the image.
+set -e
+
+MAIN=io.coster.usermanagementsvc.UserManagementSvcApplication
+CLASSPATH=$(cat /app/classpath)
+CDS_ARCHIVE=${CDS_ARCHIVE:-/app/cds/app.jsa}
+PORT=${SERVER_PORT:-9001}
+
+if [ "$CDS_TRAINING" = "true" ]; then
+    mkdir -p "$(dirname "$CDS_ARCHIVE")"
+    java $JAVA_ARGS -XX:DumpLoadedClassList="$CDS_ARCHIVE.classlist" -cp "$CLASSPATH" $MAIN "$@" &
+    PID=$!
+    until wget -q -O /dev/null "http://localhost:$PORT/actuator/health"; do
+        kill -0 $PID
+        sleep 1
+    done
+    wget -q -O /dev/null --header 'Content-Type: application/json' \
+        --post-data '{"userId":"training@coster.io","authToken":"training"}' \
+        "http://localhost:$PORT/auth/validate" || true
+    kill $PID
+    wait $PID || true
+    exec java -Xshare:dump -XX:SharedClassListFile="$CDS_ARCHIVE.classlist" -XX:SharedArchiveFile="$CDS_ARCHIVE" \
+        -cp "$CLASSPATH"
+fi
+
+if [ -f "$CDS_ARCHIVE" ]; then
+    JAVA_ARGS="$JAVA_ARGS -XX:SharedArchiveFile=$CDS_ARCHIVE -Xshare:auto"
+fi
+exec java $JAVA_ARGS -cp "$CLASSPATH" $MAIN "$@"
@@ -0,0 +1,24 @@
+package io.coster.usermanagementsvc.contract;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Builder
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchValidationRequest {
+
+    @Valid
+    @NotEmpty
+    @Size(max = 500)
+    private List<ValidationRequest> requests;
+
+}
@@ -0,0 +1,28 @@
+package io.coster.usermanagementsvc.contract;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One line of the newline-delimited JSON response of a bulk import, written after each batch and once at the end.
+ */
+@Builder
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkImportProgress {
+
+    private long processed;
+    private long imported;
+    private long skipped;
+    private long failed;
+    private double recordsPerSecond;
+    private boolean done;
+    // the first errors, only on the last line
+    private List<String> errors;
+
+}
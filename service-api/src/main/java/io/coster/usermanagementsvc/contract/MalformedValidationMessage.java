@@ -0,0 +1,11 @@
+package io.coster.usermanagementsvc.contract;
+
+/**
+ * Thrown by {@link ValidationCodec} when a message is truncated, oversized or breaks the limits of the contract.
+ */
+public class MalformedValidationMessage extends RuntimeException {
+
+    public MalformedValidationMessage(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,181 @@
+package io.coster.usermanagementsvc.contract;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Length-prefixed binary encoding of {@code /auth/validate} and {@code /auth/validate/batch}, sent and accepted with
+ * the {@value #MEDIA_TYPE} content type. All numbers are big-endian, strings are UTF-8:
+ * <pre>
+ * request:        uint16 user id length, user id, uint16 token length, token
+ * batch request:  uint16 count, count requests
+ * response:       uint8 1 if valid, 0 if not
+ * batch response: uint16 count, count responses, in the order of the requests
+ * </pre>
+ * Responses do not echo the credentials back. Decoding applies the same limits as the constraints on
+ * {@link ValidationRequest} and {@link BatchValidationRequest}.
+ */
+public final class ValidationCodec {
+
+    public static final String MEDIA_TYPE = "application/x-coster-validation";
+
+    public static final int MAX_BATCH_SIZE = 500;
+    static final int MIN_USER_ID_LENGTH = 2;
+    static final int MAX_USER_ID_LENGTH = 60;
+    static final int MIN_TOKEN_LENGTH = 5;
+    private static final int MAX_FIELD_BYTES = 0xFFFF;
+
+    private ValidationCodec() {
+    }
+
+    public static byte[] encodeRequest(String userId, String authToken) {
+        byte[] userIdBytes = utf8(userId);
+        byte[] tokenBytes = utf8(authToken);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + userIdBytes.length + tokenBytes.length);
+        putField(buffer, userIdBytes);
+        putField(buffer, tokenBytes);
+        return buffer.array();
+    }
+
+    public static byte[] encodeBatchRequest(List<ValidationRequest> requests) {
+        if (requests.size() > MAX_BATCH_SIZE) {
+            throw new MalformedValidationMessage("At most " + MAX_BATCH_SIZE + " credentials fit in a batch.");
+        }
+        List<byte[]> fields = new ArrayList<>(requests.size() * 2);
+        int size = 2;
+        for (ValidationRequest request : requests) {
+            byte[] userIdBytes = utf8(request.getUserId());
+            byte[] tokenBytes = utf8(request.getAuthToken());
+            fields.add(userIdBytes);
+            fields.add(tokenBytes);
+            size += 4 + userIdBytes.length + tokenBytes.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putShort((short) requests.size());
+        for (byte[] field : fields) {
+            putField(buffer, field);
+        }
+        return buffer.array();
+    }
+
+    public static ValidationRequest decodeRequest(byte[] message) {
+        ByteBuffer buffer = ByteBuffer.wrap(message);
+        try {
+            ValidationRequest request = getRequest(buffer);
+            checkFullyRead(buffer);
+            return request;
+        } catch (BufferUnderflowException e) {
+            throw truncated();
+        }
+    }
+
+    public static List<ValidationRequest> decodeBatchRequest(byte[] message) {
+        ByteBuffer buffer = ByteBuffer.wrap(message);
+        try {
+            int count = getCount(buffer);
+            if (count == 0) {
+                throw new MalformedValidationMessage("A batch needs at least one credential.");
+            }
+            List<ValidationRequest> requests = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                requests.add(getRequest(buffer));
+            }
+            checkFullyRead(buffer);
+            return requests;
+        } catch (BufferUnderflowException e) {
+            throw truncated();
+        }
+    }
+
+    public static byte[] encodeResponse(boolean valid) {
+        return new byte[]{valid ? (byte) 1 : (byte) 0};
+    }
+
+    public static byte[] encodeBatchResponse(List<Boolean> validities) {
+        ByteBuffer buffer = ByteBuffer.allocate(2 + validities.size());
+        buffer.putShort((short) validities.size());
+        for (Boolean valid : validities) {
+            buffer.put(valid ? (byte) 1 : (byte) 0);
+        }
+        return buffer.array();
+    }
+
+    public static boolean decodeResponse(byte[] message) {
+        if (message.length != 1) {
+            throw new MalformedValidationMessage("A response is a single byte, got " + message.length + ".");
+        }
+        return message[0] != 0;
+    }
+
+    public static List<Boolean> decodeBatchResponse(byte[] message) {
+        ByteBuffer buffer = ByteBuffer.wrap(message);
+        try {
+            int count = getCount(buffer);
+            List<Boolean> validities = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                validities.add(buffer.get() != 0);
+            }
+            checkFullyRead(buffer);
+            return validities;
+        } catch (BufferUnderflowException e) {
+            throw truncated();
+        }
+    }
+
+    private static ValidationRequest getRequest(ByteBuffer buffer) {
+        String userId = getField(buffer);
+        if (userId.length() < MIN_USER_ID_LENGTH || userId.length() > MAX_USER_ID_LENGTH) {
+            throw new MalformedValidationMessage("userId: length must be between "
+                    + MIN_USER_ID_LENGTH + " and " + MAX_USER_ID_LENGTH);
+        }
+        String authToken = getField(buffer);
+        if (authToken.length() < MIN_TOKEN_LENGTH) {
+            throw new MalformedValidationMessage("authToken: length must be at least " + MIN_TOKEN_LENGTH);
+        }
+        return new ValidationRequest(userId, authToken);
+    }
+
+    private static int getCount(ByteBuffer buffer) {
+        int count = Short.toUnsignedInt(buffer.getShort());
+        if (count > MAX_BATCH_SIZE) {
+            throw new MalformedValidationMessage("At most " + MAX_BATCH_SIZE + " credentials fit in a batch.");
+        }
+        return count;
+    }
+
+    private static String getField(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        if (length > buffer.remaining()) {
+            throw truncated();
+        }
+        String field = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return field;
+    }
+
+    private static void putField(ByteBuffer buffer, byte[] field) {
+        buffer.putShort((short) field.length);
+        buffer.put(field);
+    }
+
+    private static byte[] utf8(String field) {
+        byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_FIELD_BYTES) {
+            throw new MalformedValidationMessage("Fields are limited to " + MAX_FIELD_BYTES + " bytes.");
+        }
+        return bytes;
+    }
+
+    private static void checkFullyRead(ByteBuffer buffer) {
+        if (buffer.hasRemaining()) {
+            throw new MalformedValidationMessage(buffer.remaining() + " unexpected bytes at the end of the message.");
+        }
+    }
+
+    private static MalformedValidationMessage truncated() {
+        return new MalformedValidationMessage("Message is truncated.");
+    }
+}
@@ -0,0 +1,42 @@
+package io.coster.usermanagementsvc.config;
+
+import io.coster.usermanagementsvc.repositories.InvalidationRepository;
+import io.coster.usermanagementsvc.services.events.InvalidationBus;
+import io.coster.usermanagementsvc.services.events.InvalidationBusType;
+import io.coster.usermanagementsvc.services.events.JdbcInvalidationBus;
+import io.coster.usermanagementsvc.services.events.LocalInvalidationBus;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+@Configuration
+public class InvalidationBusConfig {
+
+    @Bean
+    public InvalidationBus invalidationBus(InvalidationRepository repository,
+                                           JdbcTemplate jdbcTemplate,
+                                           DataSourceProperties dataSourceProperties,
+                                           MeterRegistry meterRegistry,
+                                           @Value("${auth.invalidation.bus:local}") InvalidationBusType type,
+                                           @Value("${auth.invalidation.batch-size:500}") int batchSize,
+                                           @Value("${auth.invalidation.gap-timeout-ms:10000}") long gapTimeoutMs,
+                                           @Value("${auth.invalidation.retention-ms:3600000}") long retentionMs,
+                                           @Value("${auth.invalidation.postgres-notify:false}") boolean notify) {
+        if (type == InvalidationBusType.JDBC) {
+            // LISTEN holds its connection for good, so it is opened outside the pool rather than taking one of it
+            DataSource listenerDataSource = notify
+                    ? dataSourceProperties.initializeDataSourceBuilder().type(DriverManagerDataSource.class).build()
+                    : null;
+            return new JdbcInvalidationBus(repository, jdbcTemplate, meterRegistry, batchSize,
+                    Duration.ofMillis(gapTimeoutMs), Duration.ofMillis(retentionMs), listenerDataSource);
+        }
+        return new LocalInvalidationBus();
+    }
+}
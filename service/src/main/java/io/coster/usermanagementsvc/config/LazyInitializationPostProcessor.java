@@ -0,0 +1,89 @@
+package io.coster.usermanagementsvc.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.Lifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.type.MethodMetadata;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import javax.annotation.PostConstruct;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Marks beans lazy, so that they are created when first used instead of on startup. Beans that have to run without
+ * being asked for stay eager: scheduled tasks, event listeners, startup checks, lifecycle beans, and beans whose
+ * class is only known as an interface or abstract type, as the actual class may be any of these.
+ */
+@Slf4j
+public class LazyInitializationPostProcessor implements BeanFactoryPostProcessor {
+
+    private static final List<Class<? extends Annotation>> EAGER_METHOD_ANNOTATIONS =
+            Arrays.asList(Scheduled.class, EventListener.class, PostConstruct.class);
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+        int lazy = 0;
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(name);
+            if (definition.isLazyInit() || definition.getRole() == BeanDefinition.ROLE_INFRASTRUCTURE) {
+                continue;
+            }
+            Class<?> type = resolveType(definition, beanFactory.getBeanClassLoader());
+            if (type != null && canBeLazy(type)) {
+                definition.setLazyInit(true);
+                lazy++;
+            }
+        }
+        log.info("Deferred creating {} of {} beans until first use", lazy, beanFactory.getBeanDefinitionCount());
+    }
+
+    private static Class<?> resolveType(BeanDefinition definition, ClassLoader classLoader) {
+        String typeName = definition.getBeanClassName();
+        if (definition.getFactoryMethodName() != null) {
+            MethodMetadata factoryMethod = definition instanceof AnnotatedBeanDefinition
+                    ? ((AnnotatedBeanDefinition) definition).getFactoryMethodMetadata()
+                    : null;
+            typeName = factoryMethod == null ? null : factoryMethod.getReturnTypeName();
+        }
+        if (typeName == null) {
+            return null;
+        }
+        try {
+            return ClassUtils.forName(typeName, classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private static boolean canBeLazy(Class<?> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())
+                || Lifecycle.class.isAssignableFrom(type) || SmartInitializingSingleton.class.isAssignableFrom(type)) {
+            return false;
+        }
+        try {
+            for (Method method : ReflectionUtils.getUniqueDeclaredMethods(type)) {
+                for (Class<? extends Annotation> annotation : EAGER_METHOD_ANNOTATIONS) {
+                    if (AnnotatedElementUtils.hasAnnotation(method, annotation)) {
+                        return false;
+                    }
+                }
+            }
+        } catch (LinkageError e) {
+            // methods referring to classes missing from the classpath
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,16 @@
+package io.coster.usermanagementsvc.config;
+
+import io.coster.usermanagementsvc.logging.SampledSqlLogger;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer statementInspectorCustomizer(SampledSqlLogger sqlLogger) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, sqlLogger);
+    }
+}
@@ -0,0 +1,21 @@
+package io.coster.usermanagementsvc.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Turns the second-level cache off unless {@link UserCacheConfig} is enabled. Hibernate enables it by default and
+ * picks up the JCache region factory from the classpath by itself, which would cache users with the local bus.
+ */
+@Configuration
+@ConditionalOnProperty(name = "auth.user-cache.enabled", havingValue = "false", matchIfMissing = true)
+public class NoUserCacheConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer noUserCacheCustomizer() {
+        return properties -> properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, false);
+    }
+}
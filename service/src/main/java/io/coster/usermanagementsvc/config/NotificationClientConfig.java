@@ -0,0 +1,70 @@
+package io.coster.usermanagementsvc.config;
+
+import io.coster.usermanagementsvc.services.circuit.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP client of notification-svc: pooled keep-alive connections, and timeouts on connecting, on waiting for a pooled
+ * connection and on every read, so that a slow notification-svc cannot hold on to the outbox senders.
+ */
+@Configuration
+public class NotificationClientConfig {
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient notificationHttpClient(
+            @Value("${notification.http.max-connections:20}") int maxConnections,
+            @Value("${notification.http.max-connections-per-route:8}") int maxConnectionsPerRoute,
+            @Value("${notification.http.keep-alive-ms:30000}") long keepAliveMs,
+            @Value("${notification.http.connect-timeout-ms:1000}") int connectTimeoutMs,
+            @Value("${notification.http.pool-timeout-ms:500}") int poolTimeoutMs,
+            @Value("${notification.http.read-timeout-ms:2000}") int readTimeoutMs) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        // connections the server may have closed while idle are checked before reuse
+        connectionManager.setValidateAfterInactivity(2000);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMs)
+                .setConnectionRequestTimeout(poolTimeoutMs)
+                .setSocketTimeout(readTimeoutMs)
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                // the server's Keep-Alive timeout if it sends one, at most keep-alive-ms
+                .setKeepAliveStrategy((response, context) -> {
+                    long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAliveMs) : keepAliveMs;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAliveMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(RestTemplateBuilder builder, CloseableHttpClient notificationHttpClient) {
+        return builder.requestFactory(() -> new HttpComponentsClientHttpRequestFactory(notificationHttpClient)).build();
+    }
+
+    @Bean
+    public CircuitBreaker notificationCircuitBreaker(MeterRegistry meterRegistry,
+                                                     @Value("${notification.circuit.failure-threshold:5}") int failureThreshold,
+                                                     @Value("${notification.circuit.open-ms:10000}") long openMs) {
+        return new CircuitBreaker("notification", failureThreshold, TimeUnit.MILLISECONDS.toNanos(openMs), meterRegistry);
+    }
+}
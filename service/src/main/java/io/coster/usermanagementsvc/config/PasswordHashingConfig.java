@@ -0,0 +1,95 @@
+package io.coster.usermanagementsvc.config;
+
+import io.coster.usermanagementsvc.security.Argon2CostEncoder;
+import io.coster.usermanagementsvc.security.BCryptCostEncoder;
+import io.coster.usermanagementsvc.security.CostAwarePasswordEncoder;
+import io.coster.usermanagementsvc.security.DelegatingCostPasswordEncoder;
+import io.coster.usermanagementsvc.security.OffloadingPasswordEncoder;
+import io.coster.usermanagementsvc.security.PasswordCostCalibrator;
+import io.coster.usermanagementsvc.security.Pbkdf2CostEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+@Configuration
+public class PasswordHashingConfig {
+
+    @Value("${auth.password.algorithm:bcrypt}")
+    private String algorithm;
+
+    @Value("${auth.password.bcrypt.strength:10}")
+    private int bcryptStrength;
+
+    @Value("${auth.password.pbkdf2.iterations:185000}")
+    private int pbkdf2Iterations;
+
+    @Value("${auth.password.argon2.iterations:2}")
+    private int argon2Iterations;
+
+    @Value("${auth.password.argon2.memory-kb:19456}")
+    private int argon2MemoryKb;
+
+    @Value("${auth.password.argon2.parallelism:1}")
+    private int argon2Parallelism;
+
+    @Value("${auth.password.calibration.enabled:false}")
+    private boolean calibrationEnabled;
+
+    @Value("${auth.password.calibration.target-ms:250}")
+    private long calibrationTargetMs;
+
+    @Bean
+    @Primary
+    public PasswordEncoder passwordEncoder(@Qualifier("hashingPasswordEncoder") PasswordEncoder hashingPasswordEncoder,
+                                           @Value("${auth.password.hashing.threads:0}") int threads,
+                                           @Value("${auth.password.hashing.queue-capacity:32}") int queueCapacity,
+                                           MeterRegistry meterRegistry) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new OffloadingPasswordEncoder(hashingPasswordEncoder, poolSize, queueCapacity, meterRegistry);
+    }
+
+    /**
+     * Hashes on the calling thread, for callers running on a pool of their own, such as the bulk import.
+     */
+    @Bean
+    public PasswordEncoder hashingPasswordEncoder() {
+        CostAwarePasswordEncoder bcrypt = new BCryptCostEncoder(bcryptStrength);
+        CostAwarePasswordEncoder pbkdf2 = new Pbkdf2CostEncoder(pbkdf2Iterations);
+        CostAwarePasswordEncoder argon2 = new Argon2CostEncoder(argon2Iterations, argon2MemoryKb, argon2Parallelism);
+
+        CostAwarePasswordEncoder preferred;
+        int maxCost;
+        switch (algorithm.toLowerCase()) {
+            case "bcrypt":
+                preferred = bcrypt;
+                maxCost = 31;
+                break;
+            case "pbkdf2":
+                preferred = pbkdf2;
+                maxCost = 100_000_000;
+                break;
+            case "argon2":
+                preferred = argon2;
+                maxCost = 100;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown password hashing algorithm: " + algorithm);
+        }
+        // only hashes below the configured cost are upgraded, whatever cost calibration arrives at on this machine
+        CostAwarePasswordEncoder minimum = preferred;
+        if (calibrationEnabled) {
+            preferred = PasswordCostCalibrator.calibrate(preferred, Duration.ofMillis(calibrationTargetMs), maxCost);
+        }
+
+        List<CostAwarePasswordEncoder> encoders = Arrays.asList(bcrypt, pbkdf2, argon2);
+        return new DelegatingCostPasswordEncoder(preferred, minimum, encoders);
+    }
+}
@@ -0,0 +1,60 @@
+package io.coster.usermanagementsvc.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.coster.usermanagementsvc.datasource.ReplicaRoutingDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+/**
+ * Replaces the auto-configured data source once {@code datasource.replica.url} is set: read-only transactions run on
+ * a pool of replica connections, everything else on the pool of {@code spring.datasource}. Each pool takes its own
+ * hikari settings.
+ */
+@Configuration
+@ConditionalOnProperty("datasource.replica.url")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Lazy @Qualifier("primaryDataSource") DataSource primary,
+                                 @Lazy @Qualifier("replicaDataSource") DataSource replica) {
+        // the pools are created on first use: the data source initializer they trigger looks this bean up
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replica);
+        routing.afterPropertiesSet();
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy();
+        proxy.setTargetDataSource(routing);
+        // known up front rather than read from a connection, which would create the pools right away
+        proxy.setDefaultAutoCommit(true);
+        proxy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        proxy.afterPropertiesSet();
+        return proxy;
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConfigurationProperties("datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(Environment environment) {
+        // not a bean, which would leave the auto-configured spring.datasource properties ambiguous
+        DataSourceProperties properties = Binder.get(environment)
+                .bind("datasource.replica", DataSourceProperties.class)
+                .get();
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+}
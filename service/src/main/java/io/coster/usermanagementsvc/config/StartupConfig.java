@@ -0,0 +1,15 @@
+package io.coster.usermanagementsvc.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class StartupConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "startup.lazy-initialization", havingValue = "true")
+    public static LazyInitializationPostProcessor lazyInitializationPostProcessor() {
+        return new LazyInitializationPostProcessor();
+    }
+}
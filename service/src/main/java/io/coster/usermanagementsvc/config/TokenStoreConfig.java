@@ -0,0 +1,31 @@
+package io.coster.usermanagementsvc.config;
+
+import io.coster.usermanagementsvc.repositories.TokenRepository;
+import io.coster.usermanagementsvc.services.events.InvalidationBus;
+import io.coster.usermanagementsvc.services.tokens.InMemoryTokenStore;
+import io.coster.usermanagementsvc.services.tokens.JpaTokenStore;
+import io.coster.usermanagementsvc.services.tokens.TokenStore;
+import io.coster.usermanagementsvc.services.tokens.TokenStoreType;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class TokenStoreConfig {
+
+    @Bean
+    public TokenStore tokenStore(TokenRepository tokenRepository,
+                                 MeterRegistry meterRegistry,
+                                 InvalidationBus invalidationBus,
+                                 @Value("${auth.token.store:jpa}") TokenStoreType type,
+                                 @Value("${auth.token.store.memory.expected-tokens:100000}") int expectedTokens) {
+        TokenStore jpaStore = new JpaTokenStore(tokenRepository);
+        if (type == TokenStoreType.MEMORY) {
+            InMemoryTokenStore memoryStore = new InMemoryTokenStore(jpaStore, expectedTokens, meterRegistry);
+            invalidationBus.subscribe(memoryStore::onInvalidation);
+            return memoryStore;
+        }
+        return jpaStore;
+    }
+}
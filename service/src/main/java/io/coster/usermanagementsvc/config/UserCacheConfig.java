@@ -0,0 +1,100 @@
+package io.coster.usermanagementsvc.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.coster.usermanagementsvc.domain.User;
+import io.coster.usermanagementsvc.services.cache.UserEntityCache;
+import io.coster.usermanagementsvc.services.events.InvalidationBus;
+import io.coster.usermanagementsvc.services.events.InvalidationBusType;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.jcache.MissingCacheStrategy;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.CompleteConfiguration;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.expiry.CreatedExpiryPolicy;
+import javax.cache.expiry.Duration;
+import javax.cache.spi.CachingProvider;
+import javax.persistence.EntityManagerFactory;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts a JCache backed second-level cache in front of the users table. The provider is the only one on the classpath
+ * or {@code auth.user-cache.provider}. Size and time bounds are applied to Caffeine, other providers bound the cache
+ * through their own configuration, read from {@code auth.user-cache.uri}.
+ * <p>
+ * Cached users carry the password hash, so a password change has to reach every instance through the jdbc invalidation
+ * bus. With the local bus, other instances would accept the old password until the entry expired.
+ */
+@Configuration
+@ConditionalOnProperty(name = "auth.user-cache.enabled", havingValue = "true")
+public class UserCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    public CacheManager userCacheManager(@Value("${auth.user-cache.provider:}") String provider,
+                                         @Value("${auth.user-cache.uri:}") String uri,
+                                         @Value("${auth.user-cache.max-size:100000}") long maxSize,
+                                         @Value("${auth.user-cache.ttl-seconds:600}") long ttlSeconds,
+                                         @Value("${auth.invalidation.bus:local}") InvalidationBusType busType) {
+        if (busType != InvalidationBusType.JDBC) {
+            throw new IllegalStateException("User cache requires auth.invalidation.bus=jdbc.");
+        }
+        CachingProvider cachingProvider = provider.isEmpty()
+                ? Caching.getCachingProvider()
+                : Caching.getCachingProvider(provider);
+        // the default cache manager would be shared by every application context of the JVM
+        URI cacheManagerUri = uri.isEmpty() ? URI.create("urn:user-cache:" + UUID.randomUUID()) : URI.create(uri);
+        CacheManager cacheManager = cachingProvider.getCacheManager(cacheManagerUri, getClass().getClassLoader());
+        if (cacheManager.getCache(User.CACHE_REGION) == null) {
+            cacheManager.createCache(User.CACHE_REGION, cacheConfiguration(cachingProvider, maxSize, ttlSeconds));
+        }
+        return cacheManager;
+    }
+
+    private static CompleteConfiguration<Object, Object> cacheConfiguration(CachingProvider cachingProvider,
+                                                                            long maxSize, long ttlSeconds) {
+        MutableConfiguration<Object, Object> configuration = new MutableConfiguration<>()
+                // hibernate caches disassembled state and assembles a new entity on every hit, no need to copy it
+                .setStoreByValue(false)
+                .setExpiryPolicyFactory(CreatedExpiryPolicy.factoryOf(new Duration(TimeUnit.SECONDS, ttlSeconds)))
+                .setStatisticsEnabled(true);
+        if (!(cachingProvider instanceof CaffeineCachingProvider)) {
+            return configuration;
+        }
+        CaffeineConfiguration<Object, Object> caffeineConfiguration = new CaffeineConfiguration<>(configuration);
+        caffeineConfiguration.setMaximumSize(OptionalLong.of(maxSize));
+        return caffeineConfiguration;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer userCacheCustomizer(CacheManager userCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, ConfigSettings.SIMPLE_FACTORY_NAME);
+            properties.put(ConfigSettings.CACHE_MANAGER, userCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, MissingCacheStrategy.FAIL.getExternalRepresentation());
+            // region statistics for the hit ratio
+            properties.put(AvailableSettings.GENERATE_STATISTICS, true);
+        };
+    }
+
+    @Bean
+    public UserEntityCache userEntityCache(EntityManagerFactory entityManagerFactory,
+                                           CacheManager userCacheManager,
+                                           MeterRegistry meterRegistry,
+                                           InvalidationBus invalidationBus) {
+        return new UserEntityCache(entityManagerFactory, userCacheManager.getCache(User.CACHE_REGION),
+                meterRegistry, invalidationBus);
+    }
+}
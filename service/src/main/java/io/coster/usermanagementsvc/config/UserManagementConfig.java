@@ -1,38 +1,21 @@
 package io.coster.usermanagementsvc.config;
 
-import org.springframework.boot.web.client.RestTemplateBuilder;
+import io.coster.usermanagementsvc.domain.AuthToken;
+import io.coster.usermanagementsvc.services.cache.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.web.client.RestTemplate;
-import springfox.documentation.builders.PathSelectors;
-import springfox.documentation.builders.RequestHandlerSelectors;
-import springfox.documentation.spi.DocumentationType;
-import springfox.documentation.spring.web.plugins.Docket;
-import springfox.documentation.swagger2.annotations.EnableSwagger2;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.Optional;
 
 @Configuration
-@EnableSwagger2
+@EnableScheduling
 public class UserManagementConfig {
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
-    }
-
-    @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
-        return builder.build();
-    }
-
-    @Bean
-    public Docket api() {
-        return new Docket(DocumentationType.SWAGGER_2)
-                .select()
-                .apis(RequestHandlerSelectors.basePackage("io.coster.usermanagementsvc.controllers"))
-                .paths(PathSelectors.ant("/auth/*"))
-                .build();
+    public SingleFlight<String, Optional<AuthToken>> tokenLookups(MeterRegistry meterRegistry) {
+        return new SingleFlight<>("auth.token.lookups", meterRegistry);
     }
 
 }
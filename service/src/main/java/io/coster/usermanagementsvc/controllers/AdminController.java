@@ -0,0 +1,82 @@
+package io.coster.usermanagementsvc.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.coster.usermanagementsvc.contract.BulkImportProgress;
+import io.coster.usermanagementsvc.contract.ErrorResponse;
+import io.coster.usermanagementsvc.services.exceptions.AdminAccessDenied;
+import io.coster.usermanagementsvc.services.exceptions.InvalidImport;
+import io.coster.usermanagementsvc.services.imports.BulkImportService;
+import io.coster.usermanagementsvc.services.imports.ImportFormat;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+@RestController
+@RequestMapping("/admin")
+@RequiredArgsConstructor
+public class AdminController {
+
+    private final BulkImportService bulkImportService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${admin.api-key:}")
+    private String apiKey;
+
+    /**
+     * Streams the import's progress back as newline-delimited JSON, one {@link BulkImportProgress} per batch.
+     */
+    @PostMapping(value = "/users/import", consumes = {ImportFormat.NDJSON_VALUE, ImportFormat.CSV_VALUE})
+    public void importUsers(@RequestHeader(value = "X-Admin-Key", required = false) String key,
+                            @RequestParam(value = "welcome", defaultValue = "true") boolean welcomeMessages,
+                            HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        checkApiKey(key);
+        ImportFormat format = ImportFormat.fromContentType(request.getContentType());
+
+        response.setContentType(ImportFormat.NDJSON_VALUE);
+        ServletOutputStream out = response.getOutputStream();
+        bulkImportService.importUsers(request.getReader(), format, welcomeMessages, progress -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(progress));
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void checkApiKey(String key) {
+        if (apiKey.isEmpty() || key == null
+                || !MessageDigest.isEqual(apiKey.getBytes(StandardCharsets.UTF_8), key.getBytes(StandardCharsets.UTF_8))) {
+            throw new AdminAccessDenied("A valid X-Admin-Key header is required.");
+        }
+    }
+
+    @ExceptionHandler(AdminAccessDenied.class)
+    @ResponseStatus(HttpStatus.FORBIDDEN)
+    public ErrorResponse handleAdminAccessDenied(AdminAccessDenied e) {
+        return new ErrorResponse(e.getMessage());
+    }
+
+    @ExceptionHandler(InvalidImport.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorResponse handleInvalidImport(InvalidImport e) {
+        return new ErrorResponse(e.getMessage());
+    }
+}
@@ -1,18 +1,28 @@
 package io.coster.usermanagementsvc.controllers;
 
 import io.coster.usermanagementsvc.contract.AuthenticationResponse;
+import io.coster.usermanagementsvc.contract.BatchValidationRequest;
 import io.coster.usermanagementsvc.contract.ErrorResponse;
 import io.coster.usermanagementsvc.contract.LoginRequest;
+import io.coster.usermanagementsvc.contract.MalformedValidationMessage;
 import io.coster.usermanagementsvc.contract.PasswordResetRequest;
 import io.coster.usermanagementsvc.contract.RegistrationRequest;
+import io.coster.usermanagementsvc.contract.ValidationCodec;
 import io.coster.usermanagementsvc.contract.ValidationRequest;
 import io.coster.usermanagementsvc.domain.User;
 import io.coster.usermanagementsvc.services.AuthService;
 import io.coster.usermanagementsvc.services.NotificationService;
+import io.coster.usermanagementsvc.services.exceptions.DatabaseDegraded;
+import io.coster.usermanagementsvc.services.exceptions.HashingCapacityExceeded;
 import io.coster.usermanagementsvc.services.exceptions.InvalidCredentials;
+import io.coster.usermanagementsvc.services.exceptions.TooManyAttempts;
 import io.coster.usermanagementsvc.services.exceptions.UserAlreadyExists;
+import io.coster.usermanagementsvc.services.throttle.LoginThrottle;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -25,8 +35,11 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -35,8 +48,17 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AuthController {
 
+    private static final MediaType BINARY = MediaType.parseMediaType(ValidationCodec.MEDIA_TYPE);
+
     private final AuthService authService;
     private final NotificationService notificationService;
+    private final LoginThrottle loginThrottle;
+
+    @Value("${auth.password.hashing.retry-after-seconds:1}")
+    private int hashingRetryAfterSeconds;
+
+    @Value("${auth.degraded.retry-after-seconds:1}")
+    private int degradedRetryAfterSeconds;
 
     @PostMapping("/validate")
     public AuthenticationResponse validate(@RequestBody @Valid ValidationRequest request) {
@@ -47,6 +69,41 @@ public class AuthController {
                 .authToken(request.getAuthToken()).build();
     }
 
+    @PostMapping("/validate/batch")
+    public List<AuthenticationResponse> validateBatch(@RequestBody @Valid BatchValidationRequest request) {
+        List<ValidationRequest> requests = request.getRequests();
+        List<Boolean> validities = authService.validateAll(requests);
+        List<AuthenticationResponse> responses = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            responses.add(AuthenticationResponse.builder()
+                    .valid(validities.get(i))
+                    .userId(requests.get(i).getUserId())
+                    .authToken(requests.get(i).getAuthToken()).build());
+        }
+        return responses;
+    }
+
+    /**
+     * {@link #validate} for internal callers using the {@link ValidationCodec} encoding,
+     * which skips JSON binding and bean validation.
+     */
+    @PostMapping(path = "/validate", consumes = ValidationCodec.MEDIA_TYPE)
+    public ResponseEntity<byte[]> validateBinary(@RequestBody byte[] body) {
+        ValidationRequest request = ValidationCodec.decodeRequest(body);
+        boolean valid = authService.validate(request.getUserId(), request.getAuthToken());
+        return binary(ValidationCodec.encodeResponse(valid));
+    }
+
+    @PostMapping(path = "/validate/batch", consumes = ValidationCodec.MEDIA_TYPE)
+    public ResponseEntity<byte[]> validateBatchBinary(@RequestBody byte[] body) {
+        List<Boolean> validities = authService.validateAll(ValidationCodec.decodeBatchRequest(body));
+        return binary(ValidationCodec.encodeBatchResponse(validities));
+    }
+
+    private static ResponseEntity<byte[]> binary(byte[] body) {
+        return ResponseEntity.ok().contentType(BINARY).body(body);
+    }
+
     @PostMapping("/register")
     public AuthenticationResponse register(@RequestBody @Valid RegistrationRequest request) {
         String authToken = authService.register(request);
@@ -57,8 +114,15 @@ public class AuthController {
     }
 
     @PostMapping("/login")
-    public AuthenticationResponse login(@RequestBody @Valid LoginRequest request) {
-        String authToken = authService.login(request);
+    public AuthenticationResponse login(@RequestBody @Valid LoginRequest request, HttpServletRequest httpRequest) {
+        loginThrottle.acquire(request.getEmailAddr(), httpRequest.getRemoteAddr());
+        String authToken;
+        try {
+            authToken = authService.login(request);
+        } catch (InvalidCredentials e) {
+            loginThrottle.failed(request.getEmailAddr());
+            throw e;
+        }
         return AuthenticationResponse.builder()
                 .valid(true)
                 .userId(request.getEmailAddr())
@@ -73,8 +137,16 @@ public class AuthController {
     }
 
     @PostMapping("/pwdreset")
-    public AuthenticationResponse passwordReset(@RequestBody @Valid PasswordResetRequest request) {
-        String authToken = authService.resetPassword(request);
+    public AuthenticationResponse passwordReset(@RequestBody @Valid PasswordResetRequest request,
+                                                HttpServletRequest httpRequest) {
+        loginThrottle.acquire(request.getUserId(), httpRequest.getRemoteAddr());
+        String authToken;
+        try {
+            authToken = authService.resetPassword(request);
+        } catch (InvalidCredentials e) {
+            loginThrottle.failed(request.getUserId());
+            throw e;
+        }
         return AuthenticationResponse.builder()
                 .valid(true)
                 .userId(request.getUserId())
@@ -93,6 +165,14 @@ public class AuthController {
                 .collect(Collectors.joining("\n"));
     }
 
+    @ExceptionHandler(MalformedValidationMessage.class)
+    public ResponseEntity<ErrorResponse> handleMalformedValidationMessage(MalformedValidationMessage e) {
+        // errors have no binary encoding, so they are sent as JSON whatever the caller accepts
+        return ResponseEntity.badRequest()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(new ErrorResponse(e.getMessage()));
+    }
+
     @ExceptionHandler(InvalidCredentials.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ErrorResponse handleInvalidCredentials(InvalidCredentials e) {
@@ -104,4 +184,27 @@ public class AuthController {
     public ErrorResponse handleUserAlreadyExists(UserAlreadyExists e) {
         return new ErrorResponse(e.getMessage());
     }
+
+    @ExceptionHandler(HashingCapacityExceeded.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorResponse handleHashingCapacityExceeded(HashingCapacityExceeded e, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(hashingRetryAfterSeconds));
+        return new ErrorResponse(e.getMessage());
+    }
+
+    @ExceptionHandler(DatabaseDegraded.class)
+    public ResponseEntity<ErrorResponse> handleDatabaseDegraded(DatabaseDegraded e) {
+        // also answers the binary endpoints, which have no encoding for errors
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(degradedRetryAfterSeconds))
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(new ErrorResponse(e.getMessage()));
+    }
+
+    @ExceptionHandler(TooManyAttempts.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public ErrorResponse handleTooManyAttempts(TooManyAttempts e, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        return new ErrorResponse(e.getMessage());
+    }
 }
@@ -0,0 +1,67 @@
+package io.coster.usermanagementsvc.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.coster.usermanagementsvc.services.events.InvalidationBus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * Sends the reads of a user to the primary for a short window after the user's token was replaced or the user was
+ * registered, so that a replica lagging behind cannot answer with the previous token, or without the user, right after
+ * a login. Writes of every instance arrive through the invalidation bus. Does nothing unless a replica is configured.
+ */
+@Component
+public class ReadYourWritesGuard {
+
+    private final boolean enabled;
+    private final Cache<String, Boolean> recentWrites;
+    private final Counter primaryReads;
+
+    public ReadYourWritesGuard(@Value("${datasource.replica.url:}") String replicaUrl,
+                               @Value("${datasource.replica.read-your-writes-ms:5000}") long windowMs,
+                               @Value("${datasource.replica.read-your-writes.max-users:100000}") long maxUsers,
+                               MeterRegistry meterRegistry,
+                               InvalidationBus invalidationBus) {
+        this.enabled = !replicaUrl.isEmpty() && windowMs > 0;
+        this.recentWrites = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(Duration.ofMillis(Math.max(windowMs, 1)))
+                .build();
+        this.primaryReads = Counter.builder("datasource.replica.read-your-writes")
+                .description("Reads sent to the primary because the user was written to recently")
+                .register(meterRegistry);
+
+        if (enabled) {
+            invalidationBus.subscribe(event -> recentWrites.put(event.getUserId(), Boolean.TRUE));
+        }
+    }
+
+    /**
+     * Runs the reads of the given user on the primary if the user was written to within the window.
+     */
+    public <T> T read(String userId, Supplier<T> reads) {
+        if (!enabled || recentWrites.getIfPresent(userId) == null) {
+            return reads.get();
+        }
+        primaryReads.increment();
+        return ReplicaRoutingDataSource.onPrimary(reads);
+    }
+
+    /**
+     * Runs reads spanning the given users on the primary if any of them was written to within the window.
+     */
+    public <T> T readAll(Collection<String> userIds, Supplier<T> reads) {
+        if (!enabled || recentWrites.getAllPresent(userIds).isEmpty()) {
+            return reads.get();
+        }
+        primaryReads.increment();
+        return ReplicaRoutingDataSource.onPrimary(reads);
+    }
+}
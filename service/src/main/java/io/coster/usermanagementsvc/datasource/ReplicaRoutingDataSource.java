@@ -0,0 +1,54 @@
+package io.coster.usermanagementsvc.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Hands out connections of the replica pool inside read-only transactions and of the primary pool otherwise.
+ * The transaction is only marked read-only after the transaction manager asked for its connection, so this has to sit
+ * behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, which defers fetching the
+ * connection to the first statement.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final ThreadLocal<Boolean> PRIMARY_ONLY = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    public enum Target {
+        PRIMARY, REPLICA
+    }
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(Target.PRIMARY, primary);
+        targets.put(Target.REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    /**
+     * Runs the given action with every connection it fetches coming from the primary, read-only or not.
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        if (PRIMARY_ONLY.get()) {
+            return action.get();
+        }
+        PRIMARY_ONLY.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            PRIMARY_ONLY.remove();
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !PRIMARY_ONLY.get()
+                ? Target.REPLICA
+                : Target.PRIMARY;
+    }
+}
@@ -9,6 +9,7 @@ import lombok.NoArgsConstructor;
 import javax.persistence.Basic;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 import java.time.LocalDateTime;
 
@@ -17,7 +18,7 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "auth_tokens")
+@Table(name = "auth_tokens", indexes = @Index(name = "idx_auth_tokens_expiry", columnList = "expiry"))
 public class AuthToken {
 
     @Id
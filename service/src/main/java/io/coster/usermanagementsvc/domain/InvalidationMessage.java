@@ -0,0 +1,45 @@
+package io.coster.usermanagementsvc.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Basic;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "invalidation_events", indexes = @Index(name = "idx_invalidation_events_created", columnList = "created"))
+public class InvalidationMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    private InvalidationType type;
+
+    private String userId;
+
+    @Basic
+    private LocalDateTime issued;
+
+    // the instance that published the event
+    private String origin;
+
+    @Basic
+    private LocalDateTime created;
+
+}
@@ -0,0 +1,9 @@
+package io.coster.usermanagementsvc.domain;
+
+public enum InvalidationType {
+
+    TOKEN_REPLACED,
+    USER_REGISTERED,
+    USER_CHANGED
+
+}
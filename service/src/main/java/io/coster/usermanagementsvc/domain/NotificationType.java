@@ -0,0 +1,15 @@
+package io.coster.usermanagementsvc.domain;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum NotificationType {
+
+    POST_REGISTRATION("/notification/postregister"),
+    FORGOT_PASSWORD("/notification/forgotpwd");
+
+    private final String path;
+
+}
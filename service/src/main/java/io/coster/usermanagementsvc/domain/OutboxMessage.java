@@ -0,0 +1,47 @@
+package io.coster.usermanagementsvc.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "notification_outbox", indexes = @Index(name = "idx_notification_outbox_next_attempt", columnList = "nextAttempt"))
+public class OutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    private NotificationType type;
+
+    @Column(length = 2048)
+    private String payload;
+
+    @Basic
+    private LocalDateTime created;
+
+    private int attempts;
+
+    // null once the message has been given up on
+    @Basic
+    private LocalDateTime nextAttempt;
+
+}
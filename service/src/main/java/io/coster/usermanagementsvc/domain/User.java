@@ -5,8 +5,11 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.Basic;
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.Table;
@@ -18,8 +21,13 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Entity
 @Table(name = "users")
+// only with auth.user-cache.enabled, bulk updates of the password evict every cached user of this instance
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = User.CACHE_REGION)
 public class User {
 
+    public static final String CACHE_REGION = "users";
+
     @Id
     private String emailAddr;
 
@@ -30,6 +38,7 @@ public class User {
     @Basic
     private LocalDateTime registered;
 
+    // written behind by LastActiveBuffer, a cached user keeps the value it was loaded with
     @Basic
     private LocalDateTime lastActive;
 
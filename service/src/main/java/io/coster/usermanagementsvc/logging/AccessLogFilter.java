@@ -0,0 +1,74 @@
+package io.coster.usermanagementsvc.logging;
+
+import io.coster.usermanagementsvc.metrics.StatementCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Writes one key=value line per request to the {@code io.coster.usermanagementsvc.access} logger, with the endpoint,
+ * the outcome recorded by the request's operation (or else the status class), the latency and the number of SQL
+ * statements executed.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class AccessLogFilter extends OncePerRequestFilter {
+
+    public static final String OUTCOME_ATTRIBUTE = AccessLogFilter.class.getName() + ".outcome";
+
+    private static final Logger log = LoggerFactory.getLogger("io.coster.usermanagementsvc.access");
+
+    private final StatementCounter statementCounter;
+    private final boolean enabled;
+
+    public AccessLogFilter(StatementCounter statementCounter,
+                           @Value("${logging.access.enabled:true}") boolean enabled) {
+        this.statementCounter = statementCounter;
+        this.enabled = enabled;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !log.isInfoEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        statementCounter.reset();
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        try {
+            chain.doFilter(request, response);
+            status = response.getStatus();
+        } finally {
+            Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            Object outcome = request.getAttribute(OUTCOME_ATTRIBUTE);
+            log.info("method={} uri={} status={} outcome={} latency_ms={} statements={}",
+                    request.getMethod(),
+                    uri == null ? "UNKNOWN" : uri,
+                    status,
+                    outcome == null ? statusOutcome(status) : outcome,
+                    String.format("%.3f", (System.nanoTime() - start) / 1e6),
+                    statementCounter.getCount());
+        }
+    }
+
+    private static String statusOutcome(int status) {
+        if (status < 400) {
+            return "success";
+        }
+        return status < 500 ? "client-error" : "server-error";
+    }
+}
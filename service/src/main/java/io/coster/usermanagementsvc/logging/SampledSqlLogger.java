@@ -0,0 +1,35 @@
+package io.coster.usermanagementsvc.logging;
+
+import io.coster.usermanagementsvc.services.throttle.TokenBucket;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs at most {@code logging.sql.sample.per-second} of the SQL statements Hibernate prepares, while the
+ * {@code io.coster.usermanagementsvc.sql} logger is at DEBUG, which can be switched at runtime through
+ * {@code /actuator/loggers}. Only the statement text is logged, never the bound values.
+ */
+@Component
+public class SampledSqlLogger implements StatementInspector {
+
+    private static final Logger log = LoggerFactory.getLogger("io.coster.usermanagementsvc.sql");
+
+    private final TokenBucket samples;
+
+    public SampledSqlLogger(@Value("${logging.sql.sample.per-second:5}") int perSecond) {
+        this.samples = new TokenBucket(perSecond, TimeUnit.SECONDS.toNanos(1) / perSecond, System.nanoTime());
+    }
+
+    @Override
+    public String inspect(String sql) {
+        if (log.isDebugEnabled() && samples.tryAcquire(System.nanoTime()) == 0) {
+            log.debug("sql={}", sql);
+        }
+        return sql;
+    }
+}
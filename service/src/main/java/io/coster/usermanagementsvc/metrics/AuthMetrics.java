@@ -0,0 +1,86 @@
+package io.coster.usermanagementsvc.metrics;
+
+import io.coster.usermanagementsvc.logging.AccessLogFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Outcome counters of the authentication operations. Validation counters are created up front,
+ * as validation is on the hot path of every request made to the other services. Outcomes are also
+ * handed to the access log of the current request, where the last one recorded wins.
+ */
+@Component
+public class AuthMetrics {
+
+    public static final String SUCCESS = "success";
+    public static final String UNKNOWN_USER = "unknown-user";
+    public static final String USER_EXISTS = "user-exists";
+    public static final String WRONG_PASSWORD = "wrong-password";
+    public static final String MISSING_TOKEN = "missing-token";
+    public static final String INVALID_TOKEN = "invalid-token";
+
+    public enum Source {
+        SIGNED, CACHE, USER_FILTER, DATABASE, STALE
+    }
+
+    public enum Outcome {
+        VALID, INVALID, EXPIRED
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final Counter[][] validations = new Counter[Source.values().length][Outcome.values().length];
+    private final String[] outcomeTags = new String[Outcome.values().length];
+
+    public AuthMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (Outcome outcome : Outcome.values()) {
+            outcomeTags[outcome.ordinal()] = tagValue(outcome);
+        }
+        for (Source source : Source.values()) {
+            for (Outcome outcome : Outcome.values()) {
+                validations[source.ordinal()][outcome.ordinal()] = Counter.builder("auth.validations")
+                        .tag("source", tagValue(source))
+                        .tag("outcome", outcomeTags[outcome.ordinal()])
+                        .register(meterRegistry);
+            }
+        }
+    }
+
+    /**
+     * Counts a validation answered from the given source and returns whether the token was valid.
+     */
+    public boolean validated(Source source, Outcome outcome) {
+        validations[source.ordinal()][outcome.ordinal()].increment();
+        recordForRequest(outcomeTags[outcome.ordinal()]);
+        return outcome == Outcome.VALID;
+    }
+
+    public void registration(String outcome) {
+        meterRegistry.counter("auth.registrations", "outcome", outcome).increment();
+        recordForRequest(outcome);
+    }
+
+    public void login(String outcome) {
+        meterRegistry.counter("auth.logins", "outcome", outcome).increment();
+        recordForRequest(outcome);
+    }
+
+    public void passwordReset(String outcome) {
+        meterRegistry.counter("auth.password.resets", "outcome", outcome).increment();
+        recordForRequest(outcome);
+    }
+
+    private static void recordForRequest(String outcome) {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null) {
+            request.setAttribute(AccessLogFilter.OUTCOME_ATTRIBUTE, outcome, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    private static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase().replace('_', '-');
+    }
+}
@@ -0,0 +1,53 @@
+package io.coster.usermanagementsvc.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every call to a Spring Data repository as {@code repository.invocations},
+ * tagged with the repository bean, the method and whether it threw.
+ */
+@Component
+public class RepositoryMetricsPostProcessor implements BeanPostProcessor {
+
+    // resolved lazily, post processors are created before the registry is fully configured
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public RepositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof Repository && bean instanceof Advised) {
+            ((Advised) bean).addAdvice(0, timingInterceptor(beanName));
+        }
+        return bean;
+    }
+
+    private MethodInterceptor timingInterceptor(String repository) {
+        return invocation -> {
+            MeterRegistry registry = meterRegistry.getObject();
+            Timer.Sample sample = Timer.start(registry);
+            String outcome = "success";
+            try {
+                return invocation.proceed();
+            } catch (Throwable e) {
+                outcome = "error";
+                throw e;
+            } finally {
+                sample.stop(Timer.builder("repository.invocations")
+                        .tag("repository", repository)
+                        .tag("method", invocation.getMethod().getName())
+                        .tag("outcome", outcome)
+                        .register(registry));
+            }
+        };
+    }
+}
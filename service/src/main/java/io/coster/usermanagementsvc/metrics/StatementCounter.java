@@ -0,0 +1,33 @@
+package io.coster.usermanagementsvc.metrics;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the SQL statements executed on the current thread, so that they can be attributed to a request. The
+ * connections of every pool are wrapped by {@link StatementCountingPostProcessor}, so that statements of Hibernate and
+ * of JdbcTemplate are counted alike, a JDBC batch as one statement.
+ */
+@Component
+public class StatementCounter {
+
+    private final ThreadLocal<int[]> count = ThreadLocal.withInitial(() -> new int[1]);
+
+    public void increment() {
+        count.get()[0]++;
+    }
+
+    public void reset() {
+        count.get()[0] = 0;
+    }
+
+    /**
+     * Attributes statements run on another thread on behalf of the current one.
+     */
+    public void add(int statements) {
+        count.get()[0] += statements;
+    }
+
+    public int getCount() {
+        return count.get()[0];
+    }
+}
@@ -0,0 +1,88 @@
+package io.coster.usermanagementsvc.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Wraps the connections of every pool, so that each statement executed on them is counted by the
+ * {@link StatementCounter}. Data sources delegating to a pool are left alone, they would count every statement twice.
+ */
+@Component
+public class StatementCountingPostProcessor implements BeanPostProcessor {
+
+    // resolved lazily, post processors are created before the other beans
+    private final ObjectProvider<StatementCounter> statementCounter;
+
+    public StatementCountingPostProcessor(ObjectProvider<StatementCounter> statementCounter) {
+        this.statementCounter = statementCounter;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource)
+                || bean instanceof DelegatingDataSource
+                || bean instanceof AbstractRoutingDataSource) {
+            return bean;
+        }
+        StatementCounter counter = statementCounter.getObject();
+        // a subclass, so that the pool can still be injected and unwrapped as its own type
+        ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+            Object result = invocation.proceed();
+            return result instanceof Connection ? countingConnection((Connection) result, counter) : result;
+        });
+        return proxyFactory.getProxy();
+    }
+
+    private static Connection countingConnection(Connection connection, StatementCounter counter) {
+        return proxy(Connection.class, connection, (proxy, method, args) -> {
+            Object result = invoke(connection, proxy, method, args);
+            return result instanceof Statement
+                    ? countingStatement(method.getReturnType(), (Statement) result, counter)
+                    : result;
+        });
+    }
+
+    private static Object countingStatement(Class<?> type, Statement statement, StatementCounter counter) {
+        return proxy(type, statement, (proxy, method, args) -> {
+            if (method.getName().startsWith("execute")) {
+                counter.increment();
+            }
+            return invoke(statement, proxy, method, args);
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, Object target, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(target.getClass().getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object invoke(Object target, Object proxy, Method method, Object[] args)
+            throws Throwable {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package io.coster.usermanagementsvc.repositories;
+
+import io.coster.usermanagementsvc.domain.InvalidationMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface InvalidationRepository extends JpaRepository<InvalidationMessage, Long> {
+
+    Optional<InvalidationMessage> findTopByOrderByIdDesc();
+
+    List<InvalidationMessage> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+    List<InvalidationMessage> findByIdGreaterThanOrIdInOrderByIdAsc(long id, Collection<Long> ids, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("delete from InvalidationMessage m where m.created < :before")
+    int deleteCreatedBefore(@Param("before") LocalDateTime before);
+}
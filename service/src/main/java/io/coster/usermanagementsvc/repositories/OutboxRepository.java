@@ -0,0 +1,28 @@
+package io.coster.usermanagementsvc.repositories;
+
+import io.coster.usermanagementsvc.domain.OutboxMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxRepository extends JpaRepository<OutboxMessage, Long> {
+
+    List<OutboxMessage> findByNextAttemptBeforeOrderByIdAsc(LocalDateTime now, Pageable pageable);
+
+    // succeeds for one instance only, as the first one to claim the message moves its next attempt
+    @Modifying
+    @Transactional
+    @Query("update OutboxMessage m set m.nextAttempt = :leaseUntil where m.id = :id and m.nextAttempt = :nextAttempt")
+    int claim(@Param("id") Long id, @Param("nextAttempt") LocalDateTime nextAttempt,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    long countByNextAttemptNotNull();
+
+    long countByNextAttemptNull();
+}
@@ -2,9 +2,39 @@ package io.coster.usermanagementsvc.repositories;
 
 import io.coster.usermanagementsvc.domain.AuthToken;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Optional;
+import java.time.LocalDateTime;
 
 public interface TokenRepository extends JpaRepository<AuthToken, String> {
-    Optional<AuthToken> findByUserIdAndAuthToken(String userId, String token);
+
+    @Modifying
+    @Query("update AuthToken t set t.authToken = :token, t.issued = :issued, t.expiry = :expiry "
+            + "where t.userId = :userId")
+    int replaceToken(@Param("userId") String userId, @Param("token") String token,
+                     @Param("issued") LocalDateTime issued, @Param("expiry") LocalDateTime expiry);
+
+    @Modifying
+    @Query("update AuthToken t set t.authToken = :token, t.issued = :issued, t.expiry = :expiry "
+            + "where t.userId = :userId and t.authToken = :previousToken")
+    int replaceTokenIfMatches(@Param("userId") String userId, @Param("previousToken") String previousToken,
+                              @Param("token") String token,
+                              @Param("issued") LocalDateTime issued, @Param("expiry") LocalDateTime expiry);
+
+    // inserted natively, as saving an entity with an assigned id selects it first
+    @Modifying
+    @Query(nativeQuery = true, value = "INSERT INTO auth_tokens (user_id, auth_token, issued, expiry) "
+            + "VALUES (:userId, :token, :issued, :expiry)")
+    int insertToken(@Param("userId") String userId, @Param("token") String token,
+                    @Param("issued") LocalDateTime issued, @Param("expiry") LocalDateTime expiry);
+
+    // expiry is checked again on the rows to delete, a login may have refreshed them since the subquery read them
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = "DELETE FROM auth_tokens WHERE expiry < :now AND user_id IN "
+            + "(SELECT user_id FROM auth_tokens WHERE expiry < :now LIMIT :limit)")
+    int deleteExpired(@Param("now") LocalDateTime now, @Param("limit") int limit);
 }
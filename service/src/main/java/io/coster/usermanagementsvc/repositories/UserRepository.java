@@ -1,7 +1,22 @@
 package io.coster.usermanagementsvc.repositories;
 
 import io.coster.usermanagementsvc.domain.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
 
 public interface UserRepository extends JpaRepository<User, String> {
+
+    @Transactional(readOnly = true)
+    @Query("select u.emailAddr from User u where u.emailAddr > :after order by u.emailAddr")
+    List<String> findIdsAfter(@Param("after") String after, Pageable pageable);
+
+    @Modifying
+    @Query("update User u set u.password = :password where u.emailAddr = :emailAddr")
+    int updatePassword(@Param("emailAddr") String emailAddr, @Param("password") String password);
 }
@@ -0,0 +1,102 @@
+package io.coster.usermanagementsvc.security;
+
+import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
+import org.bouncycastle.crypto.params.Argon2Parameters;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Argon2id with a configurable number of iterations, memory and parallelism, using the PHC string format
+ * {@code $argon2id$v=19$m=<memory>,t=<iterations>,p=<parallelism>$<salt>$<hash>}.
+ */
+public class Argon2CostEncoder implements CostAwarePasswordEncoder {
+
+    private static final Pattern ARGON2_PATTERN =
+            Pattern.compile("^\\$argon2id\\$v=19\\$m=(\\d+),t=(\\d+),p=(\\d+)\\$([A-Za-z0-9+/]+)\\$([A-Za-z0-9+/]+)$");
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+
+    private static final Base64.Encoder ENCODER = Base64.getEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getDecoder();
+
+    private final int iterations;
+    private final int memoryKb;
+    private final int parallelism;
+    private final SecureRandom random = new SecureRandom();
+
+    public Argon2CostEncoder(int iterations, int memoryKb, int parallelism) {
+        this.iterations = iterations;
+        this.memoryKb = memoryKb;
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        byte[] hash = hash(rawPassword, salt, iterations, memoryKb, parallelism);
+        return String.format("$argon2id$v=19$m=%d,t=%d,p=%d$%s$%s", memoryKb, iterations, parallelism,
+                ENCODER.encodeToString(salt), ENCODER.encodeToString(hash));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        Matcher matcher = ARGON2_PATTERN.matcher(encodedPassword);
+        if (!matcher.matches()) {
+            return false;
+        }
+        byte[] expected = DECODER.decode(matcher.group(5));
+        byte[] actual = hash(rawPassword, DECODER.decode(matcher.group(4)), Integer.parseInt(matcher.group(2)),
+                Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(3)));
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        Matcher matcher = ARGON2_PATTERN.matcher(encodedPassword);
+        return !matcher.matches()
+                || Integer.parseInt(matcher.group(1)) < memoryKb
+                || Integer.parseInt(matcher.group(2)) < iterations
+                || Integer.parseInt(matcher.group(3)) != parallelism;
+    }
+
+    @Override
+    public boolean supports(String encodedPassword) {
+        return ARGON2_PATTERN.matcher(encodedPassword).matches();
+    }
+
+    @Override
+    public int getCost() {
+        return iterations;
+    }
+
+    @Override
+    public int nextCost(int cost) {
+        return cost + 1;
+    }
+
+    @Override
+    public CostAwarePasswordEncoder withCost(int cost) {
+        return new Argon2CostEncoder(cost, memoryKb, parallelism);
+    }
+
+    private static byte[] hash(CharSequence rawPassword, byte[] salt, int iterations, int memoryKb, int parallelism) {
+        Argon2Parameters parameters = new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id)
+                .withVersion(Argon2Parameters.ARGON2_VERSION_13)
+                .withSalt(salt)
+                .withIterations(iterations)
+                .withMemoryAsKB(memoryKb)
+                .withParallelism(parallelism)
+                .build();
+        Argon2BytesGenerator generator = new Argon2BytesGenerator();
+        generator.init(parameters);
+        byte[] hash = new byte[HASH_LENGTH];
+        generator.generateBytes(rawPassword.toString().getBytes(StandardCharsets.UTF_8), hash);
+        return hash;
+    }
+}
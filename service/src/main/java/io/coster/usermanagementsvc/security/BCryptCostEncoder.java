@@ -0,0 +1,58 @@
+package io.coster.usermanagementsvc.security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt with a configurable log2 cost, using hashes of the form {@code $2a$<cost>$<salt+hash>}.
+ */
+public class BCryptCostEncoder implements CostAwarePasswordEncoder {
+
+    private static final Pattern BCRYPT_PATTERN = Pattern.compile("^\\$2a?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}$");
+
+    private final int strength;
+    private final BCryptPasswordEncoder delegate;
+
+    public BCryptCostEncoder(int strength) {
+        this.strength = strength;
+        this.delegate = new BCryptPasswordEncoder(strength);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return supports(encodedPassword) && delegate.matches(rawPassword, encodedPassword);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        Matcher matcher = BCRYPT_PATTERN.matcher(encodedPassword);
+        return !matcher.matches() || Integer.parseInt(matcher.group(1)) < strength;
+    }
+
+    @Override
+    public boolean supports(String encodedPassword) {
+        return BCRYPT_PATTERN.matcher(encodedPassword).matches();
+    }
+
+    @Override
+    public int getCost() {
+        return strength;
+    }
+
+    @Override
+    public int nextCost(int cost) {
+        return cost + 1;
+    }
+
+    @Override
+    public CostAwarePasswordEncoder withCost(int cost) {
+        return new BCryptCostEncoder(cost);
+    }
+}
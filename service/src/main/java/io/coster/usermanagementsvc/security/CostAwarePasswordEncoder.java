@@ -0,0 +1,26 @@
+package io.coster.usermanagementsvc.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * A password encoder whose hashes record the algorithm and work factor they were produced with, so that hashes
+ * produced with another algorithm or a lower cost can be recognized. Hashes of a higher cost are not reported by
+ * {@link #upgradeEncoding(String)}.
+ */
+public interface CostAwarePasswordEncoder extends PasswordEncoder {
+
+    /**
+     * Whether the encoded password was produced by this algorithm, regardless of its cost.
+     */
+    boolean supports(String encodedPassword);
+
+    int getCost();
+
+    /**
+     * The next cost to try during calibration, which should be noticeably more expensive than the given one.
+     */
+    int nextCost(int cost);
+
+    CostAwarePasswordEncoder withCost(int cost);
+
+}
@@ -0,0 +1,54 @@
+package io.coster.usermanagementsvc.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.List;
+
+/**
+ * Encodes new passwords with the preferred encoder, and verifies stored hashes with whichever of the known
+ * encoders produced them. Hashes from another algorithm or below the minimum cost are reported by
+ * {@link #upgradeEncoding(String)}, so they can be rehashed on the next successful login. The minimum is the
+ * configured cost, which calibration may raise the preferred encoder's above: instances calibrated to different
+ * costs then leave each other's hashes alone instead of rehashing them back and forth.
+ */
+public class DelegatingCostPasswordEncoder implements PasswordEncoder {
+
+    private final CostAwarePasswordEncoder preferred;
+    private final CostAwarePasswordEncoder minimum;
+    private final List<CostAwarePasswordEncoder> encoders;
+
+    public DelegatingCostPasswordEncoder(CostAwarePasswordEncoder preferred, List<CostAwarePasswordEncoder> encoders) {
+        this(preferred, preferred, encoders);
+    }
+
+    public DelegatingCostPasswordEncoder(CostAwarePasswordEncoder preferred,
+                                         CostAwarePasswordEncoder minimum,
+                                         List<CostAwarePasswordEncoder> encoders) {
+        this.preferred = preferred;
+        this.minimum = minimum;
+        this.encoders = encoders;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return preferred.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        for (CostAwarePasswordEncoder encoder : encoders) {
+            if (encoder.supports(encodedPassword)) {
+                return encoder.matches(rawPassword, encodedPassword);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return encodedPassword != null && minimum.upgradeEncoding(encodedPassword);
+    }
+}
@@ -0,0 +1,42 @@
+package io.coster.usermanagementsvc.security;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Finds the lowest cost at which an encoder takes at least the target time to hash a password on this machine.
+ */
+@Slf4j
+public final class PasswordCostCalibrator {
+
+    private static final int SAMPLES = 3;
+    private static final String SAMPLE_PASSWORD = "calibration-sample-password";
+
+    private PasswordCostCalibrator() {
+    }
+
+    public static CostAwarePasswordEncoder calibrate(CostAwarePasswordEncoder initial, Duration target, int maxCost) {
+        CostAwarePasswordEncoder encoder = initial;
+        long elapsed = measure(encoder);
+        while (elapsed < target.toNanos() && encoder.nextCost(encoder.getCost()) <= maxCost) {
+            encoder = encoder.withCost(encoder.nextCost(encoder.getCost()));
+            elapsed = measure(encoder);
+        }
+        log.info("Calibrated {} to cost {} ({} ms per hash, target {} ms)", encoder.getClass().getSimpleName(),
+                encoder.getCost(), Duration.ofNanos(elapsed).toMillis(), target.toMillis());
+        return encoder;
+    }
+
+    private static long measure(CostAwarePasswordEncoder encoder) {
+        long[] samples = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[SAMPLES / 2];
+    }
+}
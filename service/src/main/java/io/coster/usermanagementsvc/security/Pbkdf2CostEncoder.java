@@ -0,0 +1,97 @@
+package io.coster.usermanagementsvc.security;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * PBKDF2 with HMAC-SHA256 and a configurable iteration count, using hashes of the form
+ * {@code $pbkdf2-sha256$i=<iterations>$<salt>$<hash>}.
+ */
+public class Pbkdf2CostEncoder implements CostAwarePasswordEncoder {
+
+    private static final String PREFIX = "$pbkdf2-sha256$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+
+    private static final Base64.Encoder ENCODER = Base64.getEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getDecoder();
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+
+    public Pbkdf2CostEncoder(int iterations) {
+        this.iterations = iterations;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        byte[] hash = hash(rawPassword, salt, iterations);
+        return PREFIX + "i=" + iterations + "$" + ENCODER.encodeToString(salt) + "$" + ENCODER.encodeToString(hash);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        String[] parts = split(encodedPassword);
+        if (parts == null) {
+            return false;
+        }
+        byte[] expected = DECODER.decode(parts[4]);
+        return MessageDigest.isEqual(expected, hash(rawPassword, DECODER.decode(parts[3]), parseIterations(parts[2])));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        String[] parts = split(encodedPassword);
+        return parts == null || parseIterations(parts[2]) < iterations;
+    }
+
+    @Override
+    public boolean supports(String encodedPassword) {
+        return split(encodedPassword) != null;
+    }
+
+    @Override
+    public int getCost() {
+        return iterations;
+    }
+
+    @Override
+    public int nextCost(int cost) {
+        return cost * 2;
+    }
+
+    @Override
+    public CostAwarePasswordEncoder withCost(int cost) {
+        return new Pbkdf2CostEncoder(cost);
+    }
+
+    private static String[] split(String encodedPassword) {
+        if (encodedPassword == null || !encodedPassword.startsWith(PREFIX)) {
+            return null;
+        }
+        String[] parts = encodedPassword.split("\\$");
+        return parts.length == 5 && parts[2].startsWith("i=") ? parts : null;
+    }
+
+    private static int parseIterations(String part) {
+        return Integer.parseInt(part.substring(2));
+    }
+
+    private static byte[] hash(CharSequence rawPassword, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(rawPassword.toString().toCharArray(), salt, iterations, HASH_LENGTH * 8);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not compute PBKDF2 hash", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -3,20 +3,49 @@ package io.coster.usermanagementsvc.services;
 import io.coster.usermanagementsvc.contract.LoginRequest;
 import io.coster.usermanagementsvc.contract.PasswordResetRequest;
 import io.coster.usermanagementsvc.contract.RegistrationRequest;
+import io.coster.usermanagementsvc.contract.ValidationRequest;
+import io.coster.usermanagementsvc.datasource.ReadYourWritesGuard;
 import io.coster.usermanagementsvc.domain.AuthToken;
 import io.coster.usermanagementsvc.domain.User;
-import io.coster.usermanagementsvc.repositories.TokenRepository;
+import io.coster.usermanagementsvc.metrics.AuthMetrics;
+import io.coster.usermanagementsvc.metrics.AuthMetrics.Outcome;
+import io.coster.usermanagementsvc.metrics.AuthMetrics.Source;
 import io.coster.usermanagementsvc.repositories.UserRepository;
+import io.coster.usermanagementsvc.services.cache.KnownUserFilter;
+import io.coster.usermanagementsvc.services.cache.LastKnownGoodTokens;
+import io.coster.usermanagementsvc.services.cache.SingleFlight;
+import io.coster.usermanagementsvc.services.cache.TokenValidationCache;
+import io.coster.usermanagementsvc.services.degraded.DegradedMode;
+import io.coster.usermanagementsvc.services.events.InvalidationBus;
+import io.coster.usermanagementsvc.services.events.InvalidationEvent;
+import io.coster.usermanagementsvc.services.exceptions.DatabaseDegraded;
 import io.coster.usermanagementsvc.services.exceptions.InvalidCredentials;
 import io.coster.usermanagementsvc.services.exceptions.UserAlreadyExists;
+import io.coster.usermanagementsvc.services.tokens.SignedToken;
+import io.coster.usermanagementsvc.services.tokens.SignedTokenCodec;
+import io.coster.usermanagementsvc.services.tokens.TokenMode;
+import io.coster.usermanagementsvc.services.tokens.TokenRevocationList;
+import io.coster.usermanagementsvc.services.tokens.TokenStore;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
 import javax.validation.Valid;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -25,25 +54,199 @@ public class AuthService {
 
     private static final long TOKEN_TTL_HOURS = 24L;
 
-    private final TokenRepository tokenRepository;
+    private final TokenStore tokenStore;
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final NotificationService notificationService;
+    private final TokenValidationCache tokenCache;
+    private final SignedTokenCodec signedTokenCodec;
+    private final TokenRevocationList revocationList;
+    private final KnownUserFilter knownUsers;
+    private final AuthMetrics metrics;
+    private final TransactionTemplate transactionTemplate;
+    private final LastActiveBuffer lastActiveBuffer;
+    private final SingleFlight<String, Optional<AuthToken>> tokenLookups;
+    private final InvalidationBus invalidationBus;
+    private final ReadYourWritesGuard readYourWrites;
+    private final DegradedMode degradedMode;
+    private final LastKnownGoodTokens lastKnownGood;
+
+    @Value("${auth.token.mode:opaque}")
+    private TokenMode tokenMode;
+
+    @PostConstruct
+    public void checkTokenMode() {
+        if (tokenMode == TokenMode.SIGNED && !signedTokenCodec.canIssue()) {
+            throw new IllegalStateException("Signed token mode requires auth.token.signing.active-key to be set.");
+        }
+    }
 
     public boolean validate(String userId, String token) {
-        Optional<AuthToken> optToken = tokenRepository.findByUserIdAndAuthToken(userId, token);
+        Boolean valid = validateWithoutLookup(userId, token);
+        if (valid != null) {
+            return valid;
+        }
+
+        Optional<AuthToken> optToken;
+        try {
+            optToken = degradedMode.await(() -> lookUpToken(userId))
+                    .filter(foundToken -> foundToken.getAuthToken().equals(token));
+        } catch (DatabaseDegraded e) {
+            Boolean stale = validateStale(userId, token);
+            if (stale == null) {
+                throw e;
+            }
+            return stale;
+        }
         if (!optToken.isPresent()) {
+            return metrics.validated(Source.DATABASE, Outcome.INVALID);
+        }
+        return checkExpiry(Source.DATABASE, optToken.get().getExpiry(), LocalDateTime.now());
+    }
+
+    /**
+     * Validates all given credentials, resolving every one that cannot be answered from memory with a single query.
+     * The result holds the validity of each request in the order of the input. While the database is degraded, the
+     * whole batch fails unless every request can be answered from the last known-good tokens.
+     */
+    public List<Boolean> validateAll(List<ValidationRequest> requests) {
+        List<Boolean> results = new ArrayList<>(requests.size());
+        Set<String> lookups = new HashSet<>();
+        for (ValidationRequest request : requests) {
+            Boolean valid = validateWithoutLookup(request.getUserId(), request.getAuthToken());
+            if (valid == null) {
+                lookups.add(request.getUserId());
+            }
+            results.add(valid);
+        }
+        if (lookups.isEmpty()) {
+            return results;
+        }
+
+        Map<String, AuthToken> tokensByUser;
+        try {
+            tokensByUser = degradedMode.await(() -> lookUpTokens(lookups));
+        } catch (DatabaseDegraded e) {
+            for (int i = 0; i < requests.size(); i++) {
+                if (results.get(i) == null) {
+                    Boolean stale = validateStale(requests.get(i).getUserId(), requests.get(i).getAuthToken());
+                    if (stale == null) {
+                        throw e;
+                    }
+                    results.set(i, stale);
+                }
+            }
+            return results;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < requests.size(); i++) {
+            if (results.get(i) != null) {
+                continue;
+            }
+            ValidationRequest request = requests.get(i);
+            AuthToken foundToken = tokensByUser.get(request.getUserId());
+            if (foundToken == null || !foundToken.getAuthToken().equals(request.getAuthToken())) {
+                results.set(i, metrics.validated(Source.DATABASE, Outcome.INVALID));
+                continue;
+            }
+            results.set(i, checkExpiry(Source.DATABASE, foundToken.getExpiry(), now));
+        }
+        return results;
+    }
+
+    /**
+     * Answers validation from the token itself, the cache, the known user filter or, while the database is degraded,
+     * the last known-good tokens, or returns null if the token table has to be consulted.
+     */
+    private Boolean validateWithoutLookup(String userId, String token) {
+        // the contract does not require a user id, and the caches cannot look up a missing one
+        if (userId == null || userId.trim().isEmpty()) {
             return false;
         }
-        AuthToken foundToken = optToken.get();
-        return foundToken.getExpiry().isAfter(LocalDateTime.now());
+        // signed tokens are verified without a storage lookup, anything else falls back to the token table
+        if (tokenMode == TokenMode.SIGNED && signedTokenCodec.isSigned(token)) {
+            return validateSigned(userId, token);
+        }
+
+        LocalDateTime cachedExpiry = tokenCache.getExpiry(userId, token);
+        if (cachedExpiry != null) {
+            return checkExpiry(Source.CACHE, cachedExpiry, LocalDateTime.now());
+        }
+        if (!knownUsers.mightContain(userId)) {
+            return metrics.validated(Source.USER_FILTER, Outcome.INVALID);
+        }
+        if (degradedMode.isDegraded()) {
+            Boolean stale = validateStale(userId, token);
+            if (stale != null) {
+                degradedMode.refresh(userId, () -> lookUpToken(userId));
+                return stale;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Answers validation from the token the user had at the last lookup, within the grace period, or returns null
+     * if there is none. Tokens that expired since, or were replaced or revoked as far as this instance knows, are
+     * rejected.
+     */
+    private Boolean validateStale(String userId, String token) {
+        if (!lastKnownGood.isKnown(userId)) {
+            return null;
+        }
+        LocalDateTime expiry = lastKnownGood.getExpiry(userId, token);
+        if (expiry == null) {
+            return metrics.validated(Source.STALE, Outcome.INVALID);
+        }
+        return checkExpiry(Source.STALE, expiry, LocalDateTime.now());
+    }
+
+    /**
+     * Reads the current token of the user and remembers it, unless it was replaced while it was being read.
+     */
+    private Optional<AuthToken> lookUpToken(String userId) {
+        // concurrent lookups of the same user share one query, which goes to the primary right after a write for the user
+        return tokenLookups.load(userId, () -> {
+            long cacheModCount = tokenCache.getModCount();
+            long knownModCount = lastKnownGood.getModCount();
+            Optional<AuthToken> found = readYourWrites.read(userId, () -> tokenStore.find(userId));
+            found.ifPresent(token -> tokenCache.putIfUnmodified(cacheModCount, userId, token.getAuthToken(), token.getExpiry()));
+            lastKnownGood.updateIfUnmodified(knownModCount, userId, found);
+            return found;
+        });
+    }
+
+    private Map<String, AuthToken> lookUpTokens(Set<String> userIds) {
+        long cacheModCount = tokenCache.getModCount();
+        long knownModCount = lastKnownGood.getModCount();
+        Map<String, AuthToken> tokensByUser = readYourWrites.readAll(userIds, () -> tokenStore.findAll(userIds));
+        tokensByUser.values().forEach(token -> tokenCache.putIfUnmodified(cacheModCount, token.getUserId(),
+                token.getAuthToken(), token.getExpiry()));
+        lastKnownGood.updateAllIfUnmodified(knownModCount, userIds, tokensByUser);
+        return tokensByUser;
+    }
+
+    private boolean validateSigned(String userId, String token) {
+        Optional<SignedToken> verified = signedTokenCodec.verify(token)
+                .filter(signedToken -> signedToken.getUserId().equals(userId))
+                .filter(signedToken -> !revocationList.isRevoked(signedToken));
+        if (!verified.isPresent()) {
+            return metrics.validated(Source.SIGNED, Outcome.INVALID);
+        }
+        boolean expired = !verified.get().getExpiry().isAfter(Instant.now());
+        return metrics.validated(Source.SIGNED, expired ? Outcome.EXPIRED : Outcome.VALID);
+    }
+
+    private boolean checkExpiry(Source source, LocalDateTime expiry, LocalDateTime now) {
+        return metrics.validated(source, expiry.isAfter(now) ? Outcome.VALID : Outcome.EXPIRED);
     }
 
+    @Transactional
     public String register(RegistrationRequest request) {
 
-        // check if user already exists
-        Optional<User> byId = userRepository.findById(request.getEmailAddr());
-        if (byId.isPresent()) {
+        // check if user already exists, never trusting the filter here: saving over an existing user would merge into it
+        if (userRepository.existsById(request.getEmailAddr())) {
+            metrics.registration(AuthMetrics.USER_EXISTS);
             throw new UserAlreadyExists("User is already registered: " + request.getEmailAddr());
         }
 
@@ -57,88 +260,175 @@ public class AuthService {
                 .registered(now)
                 .lastActive(now).build();
         userRepository.saveAndFlush(user);
+        invalidationBus.publish(InvalidationEvent.userRegistered(user.getEmailAddr()));
 
         // generate token for new user
-        String token = UUID.randomUUID().toString();
-        AuthToken tokenEntry = AuthToken.builder()
-                .authToken(token)
-                .userId(request.getEmailAddr())
-                .issued(now)
-                .expiry(now.plus(TOKEN_TTL_HOURS, ChronoUnit.HOURS))
-                .build();
-        tokenRepository.saveAndFlush(tokenEntry);
+        AuthToken tokenEntry = newToken(request.getEmailAddr(), now);
+        tokenStore.insert(tokenEntry);
 
         notificationService.sendPostRegistrationMessage(user);
+        metrics.registration(AuthMetrics.SUCCESS);
 
-        return token;
+        return tokenEntry.getAuthToken();
     }
 
 
+    /**
+     * Checks the credentials, then replaces the user's token in a single write transaction; last_active is written
+     * behind. Password hashing happens before the transaction starts, so that it does not hold on to a pooled connection.
+     */
     public String login(LoginRequest request) {
 
         // check if credentials are valid
-        User user = userRepository.findById(request.getEmailAddr())
-                .orElseThrow(() -> new InvalidCredentials("Email address is not registered."));
+        User user = findUser(request.getEmailAddr()).orElseThrow(() -> {
+            metrics.login(AuthMetrics.UNKNOWN_USER);
+            return new InvalidCredentials("Email address is not registered.");
+        });
 
         // check password
         if (!passwordMatch(request, user)) {
+            metrics.login(AuthMetrics.WRONG_PASSWORD);
             throw new InvalidCredentials("Password provided is incorrect.");
         }
 
-        // delete any previous tokens
-        Optional<AuthToken> previousToken = tokenRepository.findById(user.getEmailAddr());
-        previousToken.ifPresent(tokenRepository::delete);
+        // rehash the password if it was stored with an outdated algorithm or cost
+        String upgradedPassword = passwordEncoder.upgradeEncoding(user.getPassword())
+                ? passwordEncoder.encode(request.getPassword())
+                : null;
 
-        // generate new token
+        // replace the previous token
         LocalDateTime now = LocalDateTime.now();
-        AuthToken token = AuthToken.builder()
-                .authToken(UUID.randomUUID().toString())
+        LocalDateTime expiry = now.plus(TOKEN_TTL_HOURS, ChronoUnit.HOURS);
+        String token = generateToken(user.getEmailAddr(), now, expiry);
+        AuthToken newToken = AuthToken.builder()
+                .authToken(token)
                 .userId(user.getEmailAddr())
                 .issued(now)
-                .expiry(now.plus(TOKEN_TTL_HOURS, ChronoUnit.HOURS)).build();
-        tokenRepository.saveAndFlush(token);
+                .expiry(expiry).build();
+        try {
+            storeLoginToken(newToken, upgradedPassword);
+        } catch (DataIntegrityViolationException e) {
+            // a concurrent login inserted the user's first token row, which the retry updates
+            storeLoginToken(newToken, upgradedPassword);
+        }
 
         // set last_active to now
-        user.setLastActive(now);
-        userRepository.saveAndFlush(user);
+        lastActiveBuffer.record(user.getEmailAddr(), now);
+        metrics.login(AuthMetrics.SUCCESS);
+
+        return token;
+    }
 
-        return token.getAuthToken();
+    private void storeLoginToken(AuthToken token, String upgradedPassword) {
+        transactionTemplate.execute(status -> {
+            tokenStore.put(token);
+            if (upgradedPassword != null) {
+                userRepository.updatePassword(token.getUserId(), upgradedPassword);
+                invalidationBus.publish(InvalidationEvent.userChanged(token.getUserId()));
+            }
+            invalidationBus.publish(InvalidationEvent.tokenReplaced(token.getUserId(), token.getIssued()));
+            return null;
+        });
     }
 
     public Optional<User> doesUserExist(String emailAddr) {
-        return userRepository.findById(emailAddr);
+        return findUser(emailAddr);
+    }
+
+    private Optional<User> findUser(String emailAddr) {
+        if (!knownUsers.mightContain(emailAddr)) {
+            return Optional.empty();
+        }
+        return readYourWrites.read(emailAddr, () -> userRepository.findById(emailAddr));
     }
 
     private boolean passwordMatch(LoginRequest request, User user) {
         return passwordEncoder.matches(request.getPassword(), user.getPassword());
     }
 
+    /**
+     * Swaps the reset token for a new one and changes the password in a single write transaction.
+     * The token is only replaced if it still matches, so a reset token cannot be used twice concurrently.
+     */
     public String resetPassword(@Valid PasswordResetRequest request) {
+        String userId = request.getUserId();
+
         // check if user exists
-        User user = userRepository.findById(request.getUserId())
-                .orElseThrow(() -> new InvalidCredentials("Email address is not registered."));
+        if (!knownUsers.mightContain(userId)) {
+            throw unknownUserOnReset();
+        }
 
         // compare against existing token
-        AuthToken previousToken = tokenRepository.findById(user.getEmailAddr())
-                .orElseThrow(() -> new InvalidCredentials("Token does not exist for user."));
-        if (!previousToken.getAuthToken().equals(request.getToken())) {
-            throw new InvalidCredentials("Token is invalid.");
+        Optional<AuthToken> previousToken = readYourWrites.read(userId, () -> tokenStore.find(userId));
+        if (!previousToken.isPresent()) {
+            if (!readYourWrites.read(userId, () -> userRepository.existsById(userId))) {
+                throw unknownUserOnReset();
+            }
+            metrics.passwordReset(AuthMetrics.MISSING_TOKEN);
+            throw new InvalidCredentials("Token does not exist for user.");
+        }
+        if (!previousToken.get().getAuthToken().equals(request.getToken())) {
+            throw invalidTokenOnReset();
         }
-        tokenRepository.delete(previousToken);
 
-        // generate new token
+        // generate new token and change password
+        String password = passwordEncoder.encode(request.getPassword());
         LocalDateTime now = LocalDateTime.now();
-        AuthToken token = AuthToken.builder()
-                .authToken(UUID.randomUUID().toString())
-                .userId(user.getEmailAddr())
+        LocalDateTime expiry = now.plus(TOKEN_TTL_HOURS, ChronoUnit.HOURS);
+        String token = generateToken(userId, now, expiry);
+        transactionTemplate.execute(status -> {
+            AuthToken newToken = AuthToken.builder()
+                    .authToken(token)
+                    .userId(userId)
+                    .issued(now)
+                    .expiry(expiry).build();
+            if (!tokenStore.replace(request.getToken(), newToken)) {
+                throw invalidTokenOnReset();
+            }
+            if (userRepository.updatePassword(userId, password) == 0) {
+                throw unknownUserOnReset();
+            }
+            // ahead of the token, so that an instance rejecting the old token no longer has the old password cached
+            invalidationBus.publish(InvalidationEvent.userChanged(userId));
+            invalidationBus.publish(InvalidationEvent.tokenReplaced(userId, now));
+            return null;
+        });
+        metrics.passwordReset(AuthMetrics.SUCCESS);
+
+        return token;
+    }
+
+    private InvalidCredentials unknownUserOnReset() {
+        metrics.passwordReset(AuthMetrics.UNKNOWN_USER);
+        return new InvalidCredentials("Email address is not registered.");
+    }
+
+    private InvalidCredentials invalidTokenOnReset() {
+        metrics.passwordReset(AuthMetrics.INVALID_TOKEN);
+        return new InvalidCredentials("Token is invalid.");
+    }
+
+    /**
+     * Creates the first token of a newly registered user.
+     */
+    public AuthToken newToken(String userId, LocalDateTime now) {
+        LocalDateTime expiry = now.plus(TOKEN_TTL_HOURS, ChronoUnit.HOURS);
+        return AuthToken.builder()
+                .authToken(generateToken(userId, now, expiry))
+                .userId(userId)
                 .issued(now)
-                .expiry(now.plus(TOKEN_TTL_HOURS, ChronoUnit.HOURS)).build();
-        tokenRepository.saveAndFlush(token);
+                .expiry(expiry)
+                .build();
+    }
 
-        // change password
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
-        userRepository.saveAndFlush(user);
+    private String generateToken(String userId, LocalDateTime issued, LocalDateTime expiry) {
+        if (tokenMode == TokenMode.SIGNED) {
+            return signedTokenCodec.issue(userId, toInstant(issued), toInstant(expiry));
+        }
+        return UUID.randomUUID().toString();
+    }
 
-        return token.getAuthToken();
+    private static Instant toInstant(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant();
     }
 }
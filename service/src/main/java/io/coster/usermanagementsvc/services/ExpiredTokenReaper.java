@@ -0,0 +1,75 @@
+package io.coster.usermanagementsvc.services;
+
+import io.coster.usermanagementsvc.services.tokens.TokenStore;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Periodically deletes expired rows from auth_tokens. Each run deletes in short transactions of at most
+ * {@code auth.token.reaper.batch-size} rows, pausing between them, so that it never holds many row locks or
+ * more than one pooled connection at a time.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "auth.token.reaper.enabled", havingValue = "true", matchIfMissing = true)
+public class ExpiredTokenReaper {
+
+    private final TokenStore tokenStore;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final long pauseMs;
+
+    private final DistributionSummary reapedRows;
+    private final Timer runTimer;
+
+    public ExpiredTokenReaper(TokenStore tokenStore,
+                              MeterRegistry meterRegistry,
+                              @Value("${auth.token.reaper.batch-size:500}") int batchSize,
+                              @Value("${auth.token.reaper.max-batches-per-run:200}") int maxBatchesPerRun,
+                              @Value("${auth.token.reaper.pause-ms:100}") long pauseMs) {
+        this.tokenStore = tokenStore;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.pauseMs = pauseMs;
+
+        this.reapedRows = DistributionSummary.builder("auth.token.reaper.rows").register(meterRegistry);
+        this.runTimer = Timer.builder("auth.token.reaper.duration").register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${auth.token.reaper.interval-ms:600000}",
+            fixedDelayString = "${auth.token.reaper.interval-ms:600000}")
+    public void reap() {
+        long reaped = runTimer.record(this::reapBatches);
+        reapedRows.record(reaped);
+        if (reaped > 0) {
+            log.info("Reaped {} expired tokens", reaped);
+        }
+    }
+
+    private long reapBatches() {
+        LocalDateTime now = LocalDateTime.now();
+        long reaped = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            int deleted = tokenStore.deleteExpired(now, batchSize);
+            reaped += deleted;
+            if (deleted < batchSize) {
+                break;
+            }
+            try {
+                Thread.sleep(pauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return reaped;
+    }
+}
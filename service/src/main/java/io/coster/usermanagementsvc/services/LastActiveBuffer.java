@@ -0,0 +1,109 @@
+package io.coster.usermanagementsvc.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer of users.last_active. Timestamps are coalesced per user in memory and written with one JDBC
+ * batch every {@code auth.last-active.flush-interval-ms}, or as soon as {@code auth.last-active.max-pending} users
+ * are waiting, which bounds what is lost if the instance dies without flushing. Early flushes run on the scheduler
+ * thread, never on the request that filled the buffer. The buffer is flushed on shutdown.
+ */
+@Slf4j
+@Component
+public class LastActiveBuffer {
+
+    private static final String UPDATE_LAST_ACTIVE = "UPDATE users SET last_active = ? "
+            + "WHERE email_addr = ? AND (last_active IS NULL OR last_active < ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TaskScheduler taskScheduler;
+    private final boolean enabled;
+    private final int maxPending;
+
+    private final Map<String, LocalDateTime> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean earlyFlushScheduled = new AtomicBoolean();
+    private final Counter flushedRows;
+
+    public LastActiveBuffer(JdbcTemplate jdbcTemplate,
+                            TaskScheduler taskScheduler,
+                            MeterRegistry meterRegistry,
+                            @Value("${auth.last-active.write-behind.enabled:true}") boolean enabled,
+                            @Value("${auth.last-active.max-pending:10000}") int maxPending) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.taskScheduler = taskScheduler;
+        this.enabled = enabled;
+        this.maxPending = maxPending;
+
+        this.flushedRows = Counter.builder("auth.last-active.flushed").register(meterRegistry);
+        Gauge.builder("auth.last-active.pending", pending, Map::size).register(meterRegistry);
+    }
+
+    public void record(String userId, LocalDateTime lastActive) {
+        if (!enabled) {
+            jdbcTemplate.update(UPDATE_LAST_ACTIVE, Timestamp.valueOf(lastActive), userId, Timestamp.valueOf(lastActive));
+            return;
+        }
+        pending.merge(userId, lastActive, (previous, next) -> next.isAfter(previous) ? next : previous);
+        if (pending.size() >= maxPending && earlyFlushScheduled.compareAndSet(false, true)) {
+            taskScheduler.schedule(this::flush, new Date());
+        }
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${auth.last-active.flush-interval-ms:60000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            earlyFlushScheduled.set(false);
+            writePending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void writePending() {
+        List<String> userIds = new ArrayList<>(pending.keySet());
+        List<Object[]> batch = new ArrayList<>(userIds.size());
+        for (String userId : userIds) {
+            // removed one by one, so that timestamps recorded meanwhile stay for the next flush
+            LocalDateTime lastActive = pending.remove(userId);
+            if (lastActive != null) {
+                Timestamp timestamp = Timestamp.valueOf(lastActive);
+                batch.add(new Object[]{timestamp, userId, timestamp});
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_LAST_ACTIVE, batch);
+            flushedRows.increment(batch.size());
+        } catch (RuntimeException e) {
+            log.warn("Writing last_active of {} users failed, retrying with the next flush: {}", batch.size(), e.getMessage());
+            for (Object[] row : batch) {
+                LocalDateTime lastActive = ((Timestamp) row[0]).toLocalDateTime();
+                pending.merge((String) row[1], lastActive, (previous, next) -> next.isAfter(previous) ? next : previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package io.coster.usermanagementsvc.services;
+
+import io.coster.usermanagementsvc.domain.OutboxMessage;
+import io.coster.usermanagementsvc.repositories.OutboxRepository;
+import io.coster.usermanagementsvc.services.circuit.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the notification outbox in batches, sending at most {@code notification.outbox.max-in-flight} messages
+ * to notification-svc concurrently. Failed messages are retried with exponential backoff until
+ * {@code notification.outbox.max-attempts} is reached, after which they are kept in the table as dead letters.
+ * While the circuit breaker is open, messages stay in the outbox without using up attempts.
+ * <p>
+ * Every instance runs a dispatcher, so each message is claimed before it is sent by moving its next attempt
+ * {@code notification.outbox.lease-ms} ahead. Only the instance whose update matched the next attempt it read sends
+ * it; if that instance dies before recording the outcome, the message becomes due again once the lease runs out.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "notification.outbox.dispatcher.enabled", havingValue = "true", matchIfMissing = true)
+public class NotificationDispatcher {
+
+    private enum Outcome {
+        SENT, FAILED, HELD_BACK
+    }
+
+    private final OutboxRepository outboxRepository;
+    private final RestTemplate restTemplate;
+    private final CircuitBreaker circuitBreaker;
+    private final String notificationServiceUrl;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration lease;
+    private final ExecutorService senders;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong deadLetters = new AtomicLong();
+    private final Counter sent;
+    private final Counter failed;
+
+    public NotificationDispatcher(OutboxRepository outboxRepository,
+                                  RestTemplate restTemplate,
+                                  CircuitBreaker notificationCircuitBreaker,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${notification.service.url}") String notificationServiceUrl,
+                                  @Value("${notification.outbox.batch-size:50}") int batchSize,
+                                  @Value("${notification.outbox.max-in-flight:4}") int maxInFlight,
+                                  @Value("${notification.outbox.max-attempts:10}") int maxAttempts,
+                                  @Value("${notification.outbox.initial-backoff-ms:1000}") long initialBackoffMs,
+                                  @Value("${notification.outbox.max-backoff-ms:600000}") long maxBackoffMs,
+                                  @Value("${notification.outbox.lease-ms:60000}") long leaseMs) {
+        this.outboxRepository = outboxRepository;
+        this.restTemplate = restTemplate;
+        this.circuitBreaker = notificationCircuitBreaker;
+        this.notificationServiceUrl = notificationServiceUrl;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = Duration.ofMillis(initialBackoffMs);
+        this.maxBackoff = Duration.ofMillis(maxBackoffMs);
+        this.lease = Duration.ofMillis(leaseMs);
+        this.meterRegistry = meterRegistry;
+        this.senders = Executors.newFixedThreadPool(maxInFlight, new CustomizableThreadFactory("notification-sender-"));
+
+        Gauge.builder("notification.outbox.depth", pending, AtomicLong::doubleValue).register(meterRegistry);
+        Gauge.builder("notification.outbox.dead", deadLetters, AtomicLong::doubleValue).register(meterRegistry);
+        this.sent = Counter.builder("notification.outbox.sent").register(meterRegistry);
+        this.failed = Counter.builder("notification.outbox.failed").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${notification.outbox.poll-interval-ms:1000}")
+    public void drain() {
+        List<OutboxMessage> batch;
+        boolean allSent;
+        do {
+            batch = outboxRepository.findByNextAttemptBeforeOrderByIdAsc(LocalDateTime.now(), PageRequest.of(0, batchSize));
+            allSent = dispatch(claim(batch));
+        } while (allSent && batch.size() == batchSize);
+
+        pending.set(outboxRepository.countByNextAttemptNotNull());
+        deadLetters.set(outboxRepository.countByNextAttemptNull());
+    }
+
+    /**
+     * Returns the messages of the batch that this instance claimed, leaving out the ones another instance got first.
+     */
+    private List<OutboxMessage> claim(List<OutboxMessage> batch) {
+        LocalDateTime leaseUntil = LocalDateTime.now().plus(lease);
+        List<OutboxMessage> claimed = new ArrayList<>(batch.size());
+        for (OutboxMessage message : batch) {
+            if (outboxRepository.claim(message.getId(), message.getNextAttempt(), leaseUntil) > 0) {
+                claimed.add(message);
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Sends the batch, returning false if the circuit breaker held back any of its messages.
+     */
+    private boolean dispatch(List<OutboxMessage> batch) {
+        List<CompletableFuture<Outcome>> results = new ArrayList<>(batch.size());
+        for (OutboxMessage message : batch) {
+            results.add(CompletableFuture.supplyAsync(() -> send(message), senders));
+        }
+        boolean allSent = true;
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxMessage message = batch.get(i);
+            switch (results.get(i).join()) {
+                case SENT:
+                    outboxRepository.delete(message);
+                    break;
+                case FAILED:
+                    scheduleRetry(message);
+                    break;
+                default:
+                    // gives up the claim, restoring the next attempt read
+                    outboxRepository.save(message);
+                    allSent = false;
+            }
+        }
+        return allSent;
+    }
+
+    private Outcome send(OutboxMessage message) {
+        if (!circuitBreaker.tryAcquire(System.nanoTime())) {
+            return Outcome.HELD_BACK;
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        String url = notificationServiceUrl + message.getType().getPath();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            restTemplate.postForEntity(url, new HttpEntity<>(message.getPayload(), headers), String.class);
+            circuitBreaker.onSuccess();
+            sample.stop(sendTimer(message, "success"));
+            sent.increment();
+            return Outcome.SENT;
+        } catch (RuntimeException e) {
+            // a rejected message does not mean that notification-svc is unavailable
+            if (e instanceof HttpClientErrorException) {
+                circuitBreaker.onSuccess();
+            } else {
+                circuitBreaker.onFailure(System.nanoTime());
+            }
+            sample.stop(sendTimer(message, "failure"));
+            failed.increment();
+            log.warn("Sending {} notification {} failed (attempt {}): {}",
+                    message.getType(), message.getId(), message.getAttempts() + 1, e.getMessage());
+            return Outcome.FAILED;
+        }
+    }
+
+    private Timer sendTimer(OutboxMessage message, String outcome) {
+        return Timer.builder("notification.send")
+                .tag("type", message.getType().name())
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private void scheduleRetry(OutboxMessage message) {
+        int attempts = message.getAttempts() + 1;
+        message.setAttempts(attempts);
+        if (attempts >= maxAttempts) {
+            log.error("Giving up on {} notification {} after {} attempts", message.getType(), message.getId(), attempts);
+            message.setNextAttempt(null);
+        } else {
+            Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 30));
+            message.setNextAttempt(LocalDateTime.now().plus(backoff.compareTo(maxBackoff) < 0 ? backoff : maxBackoff));
+        }
+        outboxRepository.save(message);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdown();
+    }
+}
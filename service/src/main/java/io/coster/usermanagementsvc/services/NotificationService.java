@@ -1,47 +1,92 @@
 package io.coster.usermanagementsvc.services;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import contract.domain.ForgotPasswordInfo;
 import contract.domain.WelcomeInfo;
 import io.coster.usermanagementsvc.domain.AuthToken;
+import io.coster.usermanagementsvc.domain.NotificationType;
+import io.coster.usermanagementsvc.domain.OutboxMessage;
 import io.coster.usermanagementsvc.domain.User;
-import io.coster.usermanagementsvc.repositories.TokenRepository;
-import org.springframework.beans.factory.annotation.Autowired;
+import io.coster.usermanagementsvc.repositories.OutboxRepository;
+import io.coster.usermanagementsvc.services.events.InvalidationBus;
+import io.coster.usermanagementsvc.services.events.InvalidationEvent;
+import io.coster.usermanagementsvc.services.tokens.TokenStore;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
+/**
+ * Queues messages for notification-svc in the outbox table, to be delivered by the {@link NotificationDispatcher}.
+ * Messages are written in the transaction of the caller, so they are only sent if the caller's changes are committed.
+ */
 @Service
 public class NotificationService {
 
+    private static final String INSERT_OUTBOX_MESSAGE = "INSERT INTO notification_outbox "
+            + "(type, payload, created, next_attempt, attempts) VALUES (?, ?, ?, ?, 0)";
+
     @Value("${frontend.root.url}")
     private String frontendRootUrl;
 
-    @Autowired
-    private RestTemplate restTemplate;
-
-    private final TokenRepository tokenRepository;
-    private final String postRegisterUrl;
-    private final String forgotPasswordUrl;
+    private final TokenStore tokenStore;
+    private final OutboxRepository outboxRepository;
+    private final InvalidationBus invalidationBus;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final JdbcTemplate jdbcTemplate;
 
-    public NotificationService(TokenRepository tokenRepository,
-                               @Value("${notification.service.url}") String notificationServiceUrl) {
-        this.tokenRepository = tokenRepository;
-        postRegisterUrl = notificationServiceUrl + "/notification/postregister";
-        forgotPasswordUrl = notificationServiceUrl + "/notification/forgotpwd";
+    public NotificationService(TokenStore tokenStore,
+                               OutboxRepository outboxRepository,
+                               InvalidationBus invalidationBus,
+                               ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               JdbcTemplate jdbcTemplate) {
+        this.tokenStore = tokenStore;
+        this.outboxRepository = outboxRepository;
+        this.invalidationBus = invalidationBus;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.jdbcTemplate = jdbcTemplate;
     }
 
+    @Transactional(propagation = Propagation.MANDATORY)
     public void sendPostRegistrationMessage(User user) {
         WelcomeInfo welcomeInfo = new WelcomeInfo();
         welcomeInfo.setEmailAddress(user.getEmailAddr());
         welcomeInfo.setFirstName(user.getFirstName());
-        restTemplate.postForObject(postRegisterUrl, welcomeInfo, ResponseEntity.class);
+        enqueue(NotificationType.POST_REGISTRATION, welcomeInfo);
     }
 
+    /**
+     * Queues the welcome messages of many users with one JDBC batch, as Hibernate cannot batch outbox inserts.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void sendPostRegistrationMessages(List<User> users) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(users.size());
+        for (User user : users) {
+            WelcomeInfo welcomeInfo = new WelcomeInfo();
+            welcomeInfo.setEmailAddress(user.getEmailAddr());
+            welcomeInfo.setFirstName(user.getFirstName());
+            rows.add(new Object[]{NotificationType.POST_REGISTRATION.name(), toJson(welcomeInfo), now, now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_OUTBOX_MESSAGE, rows);
+        meterRegistry.counter("notification.outbox.enqueued", "type", NotificationType.POST_REGISTRATION.name())
+                .increment(users.size());
+    }
+
+    @Transactional
     public void sendForgotPasswordMessage(User user) {
         ForgotPasswordInfo forgotPasswordInfo = new ForgotPasswordInfo();
         forgotPasswordInfo.setEmailAddress(user.getEmailAddr());
@@ -49,19 +94,41 @@ public class NotificationService {
 
         String url = generatePasswordResetUrl(user.getEmailAddr());
         forgotPasswordInfo.setPasswordResetUrl(url);
-        restTemplate.postForObject(forgotPasswordUrl, forgotPasswordInfo, ResponseEntity.class);
+        enqueue(NotificationType.FORGOT_PASSWORD, forgotPasswordInfo);
+    }
+
+    private void enqueue(NotificationType type, Object info) {
+        LocalDateTime now = LocalDateTime.now();
+        OutboxMessage message = OutboxMessage.builder()
+                .type(type)
+                .payload(toJson(info))
+                .created(now)
+                .nextAttempt(now)
+                .build();
+        outboxRepository.save(message);
+        meterRegistry.counter("notification.outbox.enqueued", "type", type.name()).increment();
+    }
+
+    private String toJson(Object info) {
+        try {
+            return objectMapper.writeValueAsString(info);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize notification: " + info, e);
+        }
     }
 
     private String generatePasswordResetUrl(String userId) {
         String uuid = UUID.randomUUID().toString();
         String url = frontendRootUrl + "/pwdreset?id=" + userId + "&token=" + uuid;
+        LocalDateTime now = LocalDateTime.now();
         AuthToken token =  AuthToken.builder()
                 .authToken(uuid)
                 .userId(userId)
-                .issued(LocalDateTime.now())
+                .issued(now)
                 .expiry(LocalDateTime.now().plus(3, ChronoUnit.DAYS))
                 .build();
-        tokenRepository.saveAndFlush(token);
+        tokenStore.put(token);
+        invalidationBus.publish(InvalidationEvent.tokenReplaced(userId, now));
         return url;
     }
 
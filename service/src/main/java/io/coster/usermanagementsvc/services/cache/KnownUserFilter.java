@@ -0,0 +1,155 @@
+package io.coster.usermanagementsvc.services.cache;
+
+import io.coster.usermanagementsvc.datasource.ReplicaRoutingDataSource;
+import io.coster.usermanagementsvc.domain.InvalidationType;
+import io.coster.usermanagementsvc.repositories.UserRepository;
+import io.coster.usermanagementsvc.services.events.InvalidationBus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * In-memory Bloom filter of all registered user ids, used to reject requests for unknown users without querying
+ * the database. It is built from the users table once the application is ready and rebuilt periodically, and
+ * answers "might exist" for everything until the first build has finished.
+ * <p>
+ * Registrations reach the filter through the invalidation bus, so on multiple instances it must only be enabled
+ * together with the jdbc bus. A user registered on another instance is then missing until the next poll of the bus,
+ * and reported as unknown for up to a poll interval, the same window in which a replaced token is accepted there.
+ * Misses are only trusted while the bus has delivered every event committed up to
+ * {@code auth.user-filter.max-bus-lag-ms} ago, and answered as "might exist" while it falls further behind.
+ */
+@Slf4j
+@Component
+public class KnownUserFilter {
+
+    private final UserRepository userRepository;
+    private final InvalidationBus invalidationBus;
+    private final boolean enabled;
+    private final long maxBusLagMs;
+    private final long expectedUsers;
+    private final double falsePositiveRate;
+    private final int pageSize;
+
+    // guards filter and rebuilding, so that a put cannot land only in a filter a rebuild is discarding
+    private final Object swapLock = new Object();
+    private volatile BloomFilter filter;
+    private BloomFilter rebuilding;
+
+    private final Counter rejections;
+    private final Counter untrustedMisses;
+
+    public KnownUserFilter(UserRepository userRepository,
+                           MeterRegistry meterRegistry,
+                           InvalidationBus invalidationBus,
+                           @Value("${auth.user-filter.enabled:false}") boolean enabled,
+                           @Value("${auth.user-filter.max-bus-lag-ms:5000}") long maxBusLagMs,
+                           @Value("${auth.user-filter.expected-users:1000000}") long expectedUsers,
+                           @Value("${auth.user-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                           @Value("${auth.user-filter.page-size:10000}") int pageSize) {
+        this.userRepository = userRepository;
+        this.invalidationBus = invalidationBus;
+        this.enabled = enabled;
+        this.maxBusLagMs = maxBusLagMs;
+        this.expectedUsers = expectedUsers;
+        this.falsePositiveRate = falsePositiveRate;
+        this.pageSize = pageSize;
+
+        this.rejections = Counter.builder("auth.user.filter.rejections").register(meterRegistry);
+        this.untrustedMisses = Counter.builder("auth.user.filter.untrusted-misses").register(meterRegistry);
+        Gauge.builder("auth.user.filter.memory", this, f -> f.filter == null ? 0 : f.filter.getSizeInBytes())
+                .baseUnit("bytes").register(meterRegistry);
+
+        // delivered after commit, so that a concurrent rebuild either reads the user from the table or receives it here
+        invalidationBus.subscribe(event -> {
+            if (enabled && event.getType() == InvalidationType.USER_REGISTERED) {
+                put(event.getUserId());
+            }
+        });
+    }
+
+    /**
+     * Returns false only if the user is definitely not registered.
+     */
+    public boolean mightContain(String userId) {
+        BloomFilter current = filter;
+        if (!enabled || current == null || current.mightContain(userId)) {
+            return true;
+        }
+        LocalDateTime deliveredBefore = invalidationBus.getDeliveredBefore();
+        if (deliveredBefore == null || deliveredBefore.isBefore(LocalDateTime.now().minus(maxBusLagMs, ChronoUnit.MILLIS))) {
+            untrustedMisses.increment();
+            return true;
+        }
+        rejections.increment();
+        return false;
+    }
+
+    private void put(String userId) {
+        synchronized (swapLock) {
+            if (filter != null) {
+                filter.put(userId);
+            }
+            if (rebuilding != null) {
+                rebuilding.put(userId);
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${auth.user-filter.rebuild-interval-ms:3600000}",
+            fixedDelayString = "${auth.user-filter.rebuild-interval-ms:3600000}")
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        // read from the primary, a lagging replica would leave out the latest registrations for good
+        long users = ReplicaRoutingDataSource.onPrimary(userRepository::count);
+        BloomFilter next = new BloomFilter(Math.max(expectedUsers, 2 * users), falsePositiveRate);
+        synchronized (swapLock) {
+            rebuilding = next;
+        }
+        try {
+            long count = ReplicaRoutingDataSource.onPrimary(() -> load(next));
+            synchronized (swapLock) {
+                filter = next;
+                rebuilding = null;
+            }
+            log.info("Built known user filter of {} users in {} ms ({} bytes, {} hash functions)",
+                    count, System.currentTimeMillis() - start, next.getSizeInBytes(), next.getHashCount());
+        } finally {
+            synchronized (swapLock) {
+                rebuilding = null;
+            }
+        }
+    }
+
+    private long load(BloomFilter next) {
+        long count = 0;
+        List<String> page = userRepository.findIdsAfter("", PageRequest.of(0, pageSize));
+        while (!page.isEmpty()) {
+            page.forEach(next::put);
+            count += page.size();
+            page = userRepository.findIdsAfter(page.get(page.size() - 1), PageRequest.of(0, pageSize));
+        }
+        return count;
+    }
+}
@@ -0,0 +1,114 @@
+package io.coster.usermanagementsvc.services.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.coster.usermanagementsvc.domain.AuthToken;
+import io.coster.usermanagementsvc.domain.InvalidationType;
+import io.coster.usermanagementsvc.services.events.InvalidationBus;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The current token of each user as last read from the token table, kept for {@code auth.degraded.grace-seconds}
+ * after that read so that validation can still be answered while the database is degraded. Users whose token was
+ * replaced or whose password changed on any instance are forgotten, as their last known token is no longer good.
+ * Replacements on other instances only arrive while the invalidation bus can still read the database, so the grace
+ * period is what bounds how long a token replaced elsewhere is accepted during an outage.
+ */
+@Component
+public class LastKnownGoodTokens {
+
+    private final boolean enabled;
+    private final Cache<String, KnownToken> tokens;
+    private final AtomicLong modCount = new AtomicLong();
+
+    public LastKnownGoodTokens(@Value("${auth.degraded.enabled:true}") boolean enabled,
+                               @Value("${auth.degraded.max-size:100000}") long maxSize,
+                               @Value("${auth.degraded.grace-seconds:30}") long graceSeconds,
+                               MeterRegistry meterRegistry,
+                               InvalidationBus invalidationBus) {
+        this.enabled = enabled;
+        this.tokens = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(graceSeconds))
+                .build();
+
+        Gauge.builder("auth.token.last-known-good.size", tokens, Cache::estimatedSize).register(meterRegistry);
+
+        invalidationBus.subscribe(event -> {
+            if (event.getType() == InvalidationType.TOKEN_REPLACED || event.getType() == InvalidationType.USER_CHANGED) {
+                // counted before dropping the entry, see updateIfUnmodified
+                modCount.incrementAndGet();
+                tokens.invalidate(event.getUserId());
+            }
+        });
+    }
+
+    /**
+     * Returns a number that changes with every invalidation, to be read before the token table, see
+     * {@link #updateIfUnmodified}.
+     */
+    public long getModCount() {
+        return modCount.get();
+    }
+
+    /**
+     * Records the result of a token table lookup, where an empty result means that the user has no token, unless a
+     * token was replaced since {@link #getModCount} returned {@code expectedModCount}.
+     */
+    public void updateIfUnmodified(long expectedModCount, String userId, Optional<AuthToken> token) {
+        if (!enabled) {
+            return;
+        }
+        tokens.put(userId, token.map(found -> new KnownToken(found.getAuthToken(), found.getExpiry()))
+                .orElse(KnownToken.NONE));
+        if (modCount.get() != expectedModCount) {
+            tokens.invalidate(userId);
+        }
+    }
+
+    /**
+     * Records the result of a lookup of several users, the ones missing from the result having no token.
+     */
+    public void updateAllIfUnmodified(long expectedModCount, Collection<String> userIds,
+                                      Map<String, AuthToken> tokensByUser) {
+        for (String userId : userIds) {
+            updateIfUnmodified(expectedModCount, userId, Optional.ofNullable(tokensByUser.get(userId)));
+        }
+    }
+
+    public boolean isKnown(String userId) {
+        return tokens.getIfPresent(userId) != null;
+    }
+
+    /**
+     * Returns the expiry of the given token if it was the current token of the user at the last lookup, or null.
+     */
+    public LocalDateTime getExpiry(String userId, String authToken) {
+        KnownToken known = tokens.getIfPresent(userId);
+        if (known == null || known == KnownToken.NONE || !known.getAuthToken().equals(authToken)) {
+            return null;
+        }
+        return known.getExpiry();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class KnownToken {
+        private static final KnownToken NONE = new KnownToken(null, null);
+
+        private final String authToken;
+        private final LocalDateTime expiry;
+    }
+}
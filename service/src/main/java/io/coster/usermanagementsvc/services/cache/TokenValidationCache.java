@@ -0,0 +1,146 @@
+package io.coster.usermanagementsvc.services.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.coster.usermanagementsvc.domain.InvalidationType;
+import io.coster.usermanagementsvc.services.events.InvalidationBus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-memory cache of the current token of each user, used to answer validation requests
+ * without a round trip to the auth_tokens table. Entries are evicted on size, when the token expires,
+ * or after at most {@code auth.token.cache.max-ttl-seconds}, whichever comes first, and dropped when
+ * the token of the user is replaced on any instance.
+ */
+@Component
+public class TokenValidationCache {
+
+    private final boolean enabled;
+    private final Duration maxTtl;
+    private final Cache<String, CachedToken> cache;
+    private final AtomicLong modCount = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public TokenValidationCache(@Value("${auth.token.cache.enabled:true}") boolean enabled,
+                                @Value("${auth.token.cache.max-size:100000}") long maxSize,
+                                @Value("${auth.token.cache.max-ttl-seconds:60}") long maxTtlSeconds,
+                                MeterRegistry meterRegistry,
+                                InvalidationBus invalidationBus) {
+        this.enabled = enabled;
+        this.maxTtl = Duration.ofSeconds(maxTtlSeconds);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry())
+                .recordStats()
+                .build();
+
+        FunctionCounter.builder("auth.token.cache.requests", hits, LongAdder::doubleValue)
+                .tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("auth.token.cache.requests", misses, LongAdder::doubleValue)
+                .tag("result", "miss").register(meterRegistry);
+        FunctionCounter.builder("auth.token.cache.evictions", cache, c -> c.stats().evictionCount())
+                .register(meterRegistry);
+        Gauge.builder("auth.token.cache.size", cache, Cache::estimatedSize)
+                .register(meterRegistry);
+
+        invalidationBus.subscribe(event -> {
+            if (event.getType() == InvalidationType.TOKEN_REPLACED) {
+                // counted before dropping the entry, see putIfUnmodified
+                modCount.incrementAndGet();
+                cache.invalidate(event.getUserId());
+            }
+        });
+    }
+
+    /**
+     * Returns the expiry of the given token if it is the cached current token of the user, or null on a cache miss.
+     */
+    public LocalDateTime getExpiry(String userId, String authToken) {
+        if (!enabled) {
+            return null;
+        }
+        CachedToken cached = cache.getIfPresent(userId);
+        if (cached == null || !cached.getAuthToken().equals(authToken)) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cached.getExpiry();
+    }
+
+    /**
+     * Returns a number that changes with every invalidation, to be read before the token table, see
+     * {@link #putIfUnmodified}.
+     */
+    public long getModCount() {
+        return modCount.get();
+    }
+
+    /**
+     * Caches a token read from the token table, unless a token was replaced since {@link #getModCount} returned
+     * {@code expectedModCount}, as the token read may be the one replaced. An invalidation counted after the check
+     * drops the entry again.
+     */
+    public void putIfUnmodified(long expectedModCount, String userId, String authToken, LocalDateTime expiry) {
+        if (!enabled || !expiry.isAfter(LocalDateTime.now())) {
+            return;
+        }
+        cache.put(userId, new CachedToken(authToken, expiry));
+        if (modCount.get() != expectedModCount) {
+            cache.invalidate(userId);
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class CachedToken {
+        private final String authToken;
+        private final LocalDateTime expiry;
+    }
+
+    private class TokenExpiry implements Expiry<String, CachedToken> {
+
+        @Override
+        public long expireAfterCreate(String userId, CachedToken token, long currentTime) {
+            Duration untilExpiry = Duration.between(LocalDateTime.now(), token.getExpiry());
+            Duration ttl = untilExpiry.compareTo(maxTtl) < 0 ? untilExpiry : maxTtl;
+            return Math.max(0L, ttl.toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String userId, CachedToken token, long currentTime, long currentDuration) {
+            return expireAfterCreate(userId, token, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String userId, CachedToken token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
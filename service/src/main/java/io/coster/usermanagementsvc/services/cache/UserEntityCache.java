@@ -0,0 +1,61 @@
+package io.coster.usermanagementsvc.services.cache;
+
+import io.coster.usermanagementsvc.domain.InvalidationType;
+import io.coster.usermanagementsvc.domain.User;
+import io.coster.usermanagementsvc.services.events.InvalidationBus;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+import javax.cache.Cache;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Keeps the second-level cache of {@link User} entities in line with changes made by other instances, and exports its
+ * statistics. Changes made through this instance's entity manager update or evict the cached entities themselves.
+ */
+public class UserEntityCache {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final Statistics statistics;
+
+    public UserEntityCache(EntityManagerFactory entityManagerFactory,
+                           Cache<?, ?> cache,
+                           MeterRegistry meterRegistry,
+                           InvalidationBus invalidationBus) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // gets, puts, evictions and removals as counted by the JCache provider
+        JCacheMetrics.monitor(meterRegistry, cache, Tags.empty());
+        Gauge.builder("auth.user.cache.hit.ratio", this, UserEntityCache::hitRatio).register(meterRegistry);
+
+        invalidationBus.subscribe(event -> {
+            if (event.isRemote() && event.getType() == InvalidationType.USER_CHANGED) {
+                evict(event.getUserId());
+            }
+        });
+    }
+
+    public void evict(String userId) {
+        entityManagerFactory.getCache().evict(User.class, userId);
+    }
+
+    public long getHitCount() {
+        return regionStatistics().getHitCount();
+    }
+
+    private double hitRatio() {
+        CacheRegionStatistics region = regionStatistics();
+        long requests = region.getHitCount() + region.getMissCount();
+        return requests == 0 ? 0 : (double) region.getHitCount() / requests;
+    }
+
+    private CacheRegionStatistics regionStatistics() {
+        return statistics.getDomainDataRegionStatistics(User.CACHE_REGION);
+    }
+}
@@ -0,0 +1,77 @@
+package io.coster.usermanagementsvc.services.circuit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stops calls to a dependency after {@code failureThreshold} consecutive failures. Once {@code openNanos} have passed,
+ * a single probe call is let through: its success closes the circuit again, its failure keeps it open for another
+ * {@code openNanos}. Callers ask {@link #tryAcquire} before each call and report its outcome, unless it was refused.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final Counter rejected;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntil;
+
+    public CircuitBreaker(String name, int failureThreshold, long openNanos, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openNanos;
+        this.rejected = Counter.builder(name + ".circuit.rejected").register(meterRegistry);
+        for (State gaugedState : State.values()) {
+            Gauge.builder(name + ".circuit.state", this, breaker -> breaker.getState() == gaugedState ? 1 : 0)
+                    .tag("state", gaugedState.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Returns whether a call may be made now. While half-open, only the first caller gets to probe.
+     */
+    public synchronized boolean tryAcquire(long now) {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN && now - openUntil >= 0) {
+            state = State.HALF_OPEN;
+            log.info("Circuit {} half-open, probing", name);
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            log.info("Circuit {} closed", name);
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    public synchronized void onFailure(long now) {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            log.warn("Circuit {} open after {} consecutive failures", name, consecutiveFailures);
+            state = State.OPEN;
+            openUntil = now + openNanos;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,14 @@
+package io.coster.usermanagementsvc.services.degraded;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+@AllArgsConstructor
+public class Degradation {
+
+    private final Instant since;
+    private final String reason;
+}
@@ -0,0 +1,200 @@
+package io.coster.usermanagementsvc.services.degraded;
+
+import io.coster.usermanagementsvc.metrics.StatementCounter;
+import io.coster.usermanagementsvc.services.exceptions.DatabaseDegraded;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the wait of validation for the token table. Lookups run on a small pool with a bounded queue; one that takes
+ * longer than {@code auth.degraded.lookup-timeout-ms}, cannot be queued or fails in the database switches the service
+ * to degraded mode and fails with {@link DatabaseDegraded}, while the lookup itself carries on. It switches back after
+ * {@code auth.degraded.recovery-lookups} lookups in a row ran statements and finished within the timeout of their
+ * submission, background refreshes included. Lookups answered from memory say nothing about the database, and ones
+ * finishing late, such as those the caller gave up on, start the count over.
+ * <p>
+ * While degraded, the jdbc invalidation bus polls the same database and falls behind too, so tokens replaced or revoked
+ * on other instances keep being accepted here, for at most {@code auth.degraded.grace-seconds} after their last lookup.
+ */
+@Slf4j
+@Component
+public class DegradedMode {
+
+    private final boolean enabled;
+    private final long lookupTimeoutMs;
+    private final int recoveryLookups;
+    private final ThreadPoolExecutor executor;
+    private final StatementCounter statementCounter;
+    private final MeterRegistry meterRegistry;
+
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<Degradation> degradation = new AtomicReference<>();
+    // lookups in a row that reached the database in time since the last failure
+    private final AtomicInteger healthyLookups = new AtomicInteger();
+
+    public DegradedMode(@Value("${auth.degraded.enabled:true}") boolean enabled,
+                        @Value("${auth.degraded.lookup-timeout-ms:500}") long lookupTimeoutMs,
+                        @Value("${auth.degraded.lookup-threads:16}") int threads,
+                        @Value("${auth.degraded.lookup-queue-capacity:256}") int queueCapacity,
+                        @Value("${auth.degraded.recovery-lookups:3}") int recoveryLookups,
+                        StatementCounter statementCounter,
+                        MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.lookupTimeoutMs = lookupTimeoutMs;
+        this.recoveryLookups = recoveryLookups;
+        this.statementCounter = statementCounter;
+        this.meterRegistry = meterRegistry;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("token-lookup-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        new ExecutorServiceMetrics(executor, "token-lookup", Collections.emptyList()).bindTo(meterRegistry);
+        Gauge.builder("auth.degraded", degradation, current -> current.get() == null ? 0 : 1).register(meterRegistry);
+    }
+
+    /**
+     * Runs the lookup and waits for it at most {@code auth.degraded.lookup-timeout-ms}. The statements it runs are
+     * counted for the calling thread.
+     */
+    public <T> T await(Supplier<T> lookup) {
+        if (!enabled) {
+            return lookup.get();
+        }
+        Future<Counted<T>> future;
+        long submitted = System.nanoTime();
+        try {
+            future = executor.submit(() -> run(lookup, submitted));
+        } catch (RejectedExecutionException e) {
+            throw degrade("rejected", "Token lookups are queueing up");
+        }
+
+        try {
+            Counted<T> result = future.get(lookupTimeoutMs, TimeUnit.MILLISECONDS);
+            statementCounter.add(result.statements);
+            return result.value;
+        } catch (TimeoutException e) {
+            throw degrade("timeout", "Token lookup took longer than " + lookupTimeoutMs + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseDegraded("Interrupted while waiting for the token lookup");
+        } catch (ExecutionException e) {
+            if (isDatabaseFailure(e.getCause())) {
+                throw degrade("error", "Token lookup failed: " + e.getCause().getMessage());
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Token lookup failed", e.getCause());
+        }
+    }
+
+    /**
+     * Runs the lookup in the background, unless one for the same key is already running or queued. Used to find out
+     * whether the database has recovered while answers are served from the last known-good state.
+     */
+    public void refresh(String key, Runnable lookup) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        long submitted = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                try {
+                    run(() -> {
+                        lookup.run();
+                        return null;
+                    }, submitted);
+                } catch (RuntimeException e) {
+                    if (isDatabaseFailure(e)) {
+                        healthyLookups.set(0);
+                    }
+                    log.debug("Refreshing {} failed: {}", key, e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+        }
+    }
+
+    public boolean isDegraded() {
+        return degradation.get() != null;
+    }
+
+    /**
+     * Returns when and why the service became degraded, or null if it is not.
+     */
+    public Degradation getDegradation() {
+        return degradation.get();
+    }
+
+    private <T> Counted<T> run(Supplier<T> lookup, long submitted) {
+        statementCounter.reset();
+        T value = lookup.get();
+        int statements = statementCounter.getCount();
+        if (System.nanoTime() - submitted > TimeUnit.MILLISECONDS.toNanos(lookupTimeoutMs)) {
+            healthyLookups.set(0);
+        } else if (statements > 0) {
+            recovered();
+        }
+        return new Counted<>(value, statements);
+    }
+
+    private void recovered() {
+        if (degradation.get() == null || healthyLookups.incrementAndGet() < recoveryLookups) {
+            return;
+        }
+        Degradation ended = degradation.getAndSet(null);
+        if (ended != null) {
+            log.info("Token lookups recovered, degraded since {}", ended.getSince());
+        }
+    }
+
+    private DatabaseDegraded degrade(String cause, String reason) {
+        meterRegistry.counter("auth.degraded.lookup.failures", "cause", cause).increment();
+        healthyLookups.set(0);
+        if (degradation.compareAndSet(null, new Degradation(Instant.now(), reason))) {
+            log.warn("Validation degraded, answering from the last known-good tokens: {}", reason);
+        }
+        return new DatabaseDegraded("Token lookups are unavailable, try again later.");
+    }
+
+    private static boolean isDatabaseFailure(Throwable e) {
+        return e instanceof DataAccessException || e instanceof TransactionException;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @AllArgsConstructor
+    private static class Counted<T> {
+        private final T value;
+        private final int statements;
+    }
+}
@@ -0,0 +1,32 @@
+package io.coster.usermanagementsvc.services.degraded;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports {@code DEGRADED} while validation answers from the last known-good tokens. The instance still serves
+ * requests, so the status maps to 200 and ranks between {@code OUT_OF_SERVICE} and {@code UP}.
+ */
+@Component
+@RequiredArgsConstructor
+public class DegradedModeHealthIndicator implements HealthIndicator {
+
+    public static final Status DEGRADED = new Status("DEGRADED", "Validation answers from the last known-good tokens");
+
+    private final DegradedMode degradedMode;
+
+    @Override
+    public Health health() {
+        Degradation degradation = degradedMode.getDegradation();
+        if (degradation == null) {
+            return Health.up().build();
+        }
+        return Health.status(DEGRADED)
+                .withDetail("since", degradation.getSince().toString())
+                .withDetail("reason", degradation.getReason())
+                .build();
+    }
+}
@@ -0,0 +1,27 @@
+package io.coster.usermanagementsvc.services.events;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Delivers invalidation events to the listeners of every instance. Events published within a transaction are
+ * only delivered once it commits. Listeners are called after the change is visible in the database and must
+ * act immediately rather than defer to a transaction.
+ */
+public interface InvalidationBus {
+
+    void publish(InvalidationEvent event);
+
+    default void publishAll(Collection<InvalidationEvent> events) {
+        events.forEach(this::publish);
+    }
+
+    void subscribe(Consumer<InvalidationEvent> listener);
+
+    /**
+     * Returns the time before which every event committed by another instance has been delivered to this one, or
+     * null if that is not known yet.
+     */
+    LocalDateTime getDeliveredBefore();
+}
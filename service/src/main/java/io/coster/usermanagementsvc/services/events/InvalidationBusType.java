@@ -0,0 +1,12 @@
+package io.coster.usermanagementsvc.services.events;
+
+public enum InvalidationBusType {
+    /**
+     * Events only reach this instance.
+     */
+    LOCAL,
+    /**
+     * Events are also written to the invalidation_events table, which every instance polls.
+     */
+    JDBC
+}
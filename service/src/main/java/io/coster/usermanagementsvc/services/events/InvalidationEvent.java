@@ -0,0 +1,36 @@
+package io.coster.usermanagementsvc.services.events;
+
+import io.coster.usermanagementsvc.domain.InvalidationType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * A change that in-memory state derived from the database must follow. Remote events were published by another
+ * instance, local ones by this instance.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class InvalidationEvent {
+
+    private final InvalidationType type;
+    private final String userId;
+    // issue time of the new token, for token replacements
+    private final LocalDateTime issued;
+    private final boolean remote;
+
+    public static InvalidationEvent tokenReplaced(String userId, LocalDateTime issued) {
+        return new InvalidationEvent(InvalidationType.TOKEN_REPLACED, userId, issued, false);
+    }
+
+    public static InvalidationEvent userRegistered(String userId) {
+        return new InvalidationEvent(InvalidationType.USER_REGISTERED, userId, null, false);
+    }
+
+    public static InvalidationEvent userChanged(String userId) {
+        return new InvalidationEvent(InvalidationType.USER_CHANGED, userId, null, false);
+    }
+}
@@ -0,0 +1,198 @@
+package io.coster.usermanagementsvc.services.events;
+
+import io.coster.usermanagementsvc.datasource.ReplicaRoutingDataSource;
+import io.coster.usermanagementsvc.domain.InvalidationMessage;
+import io.coster.usermanagementsvc.repositories.InvalidationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Publishes events by writing them to the invalidation_events table in the publisher's transaction, and polls the
+ * table for the events of other instances every {@code auth.invalidation.poll-interval-ms}, which bounds how long
+ * another instance can act on stale state.
+ * <p>
+ * Rows are read in id order. As transactions may commit out of id order, ids skipped over are re-read for
+ * {@code auth.invalidation.gap-timeout-ms} before being written off as rolled back. On Postgres, publishers can also
+ * NOTIFY the other instances, which then poll right away instead of waiting for the next interval. The listener waits
+ * on a connection of its own, opened outside the pool.
+ * <p>
+ * The table is polled on the primary, as a lagging replica would hold events back beyond the poll interval. An event
+ * committed before a poll started is delivered by the end of that poll, which {@link #getDeliveredBefore} reports.
+ */
+@Slf4j
+public class JdbcInvalidationBus extends LocalInvalidationBus {
+
+    private static final String CHANNEL = "auth_invalidation";
+    private static final int MAX_GAPS = 1000;
+    private static final String INSERT_EVENT = "INSERT INTO invalidation_events (type, user_id, issued, origin, created) "
+            + "VALUES (?, ?, ?, ?, ?)";
+
+    private final InvalidationRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final Duration gapTimeout;
+    private final Duration retention;
+    private final boolean notify;
+    private final String origin = UUID.randomUUID().toString();
+
+    private long lastId;
+    // ids skipped over, which may still be committed, and until when to look for them
+    private final Map<Long, LocalDateTime> gaps = new HashMap<>();
+    private volatile LocalDateTime deliveredBefore;
+    private final Counter received;
+
+    private volatile Thread listener;
+
+    public JdbcInvalidationBus(InvalidationRepository repository,
+                               JdbcTemplate jdbcTemplate,
+                               MeterRegistry meterRegistry,
+                               int batchSize,
+                               Duration gapTimeout,
+                               Duration retention,
+                               DataSource listenerDataSource) {
+        this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+        this.gapTimeout = gapTimeout;
+        this.retention = retention;
+        this.notify = listenerDataSource != null;
+        this.lastId = ReplicaRoutingDataSource.onPrimary(
+                () -> repository.findTopByOrderByIdDesc().map(InvalidationMessage::getId).orElse(0L));
+        this.received = Counter.builder("auth.invalidation.received").register(meterRegistry);
+        if (notify) {
+            startListener(listenerDataSource);
+        }
+    }
+
+    @Override
+    public void publish(InvalidationEvent event) {
+        repository.save(InvalidationMessage.builder()
+                .type(event.getType())
+                .userId(event.getUserId())
+                .issued(event.getIssued())
+                .origin(origin)
+                .created(LocalDateTime.now())
+                .build());
+        notifyListeners();
+        super.publish(event);
+    }
+
+    @Override
+    public void publishAll(Collection<InvalidationEvent> events) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(events.size());
+        for (InvalidationEvent event : events) {
+            Timestamp issued = event.getIssued() == null ? null : Timestamp.valueOf(event.getIssued());
+            rows.add(new Object[]{event.getType().name(), event.getUserId(), issued, origin, now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_EVENT, rows);
+        notifyListeners();
+        super.publishAll(events);
+    }
+
+    private void notifyListeners() {
+        if (notify) {
+            // delivered to the listeners once the transaction commits
+            jdbcTemplate.execute("NOTIFY " + CHANNEL);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${auth.invalidation.poll-interval-ms:500}")
+    public synchronized void poll() {
+        LocalDateTime started = LocalDateTime.now();
+        List<InvalidationMessage> batch;
+        do {
+            batch = ReplicaRoutingDataSource.onPrimary(() -> gaps.isEmpty()
+                    ? repository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, batchSize))
+                    : repository.findByIdGreaterThanOrIdInOrderByIdAsc(lastId, new ArrayList<>(gaps.keySet()), PageRequest.of(0, batchSize)));
+            LocalDateTime now = LocalDateTime.now();
+            for (InvalidationMessage message : batch) {
+                if (message.getId() > lastId) {
+                    for (long skipped = lastId + 1; skipped < message.getId() && gaps.size() < MAX_GAPS; skipped++) {
+                        gaps.put(skipped, now.plus(gapTimeout));
+                    }
+                    lastId = message.getId();
+                } else {
+                    gaps.remove(message.getId());
+                }
+                if (!origin.equals(message.getOrigin())) {
+                    received.increment();
+                    deliver(new InvalidationEvent(message.getType(), message.getUserId(), message.getIssued(), true));
+                }
+            }
+            gaps.values().removeIf(deadline -> deadline.isBefore(now));
+        } while (batch.size() == batchSize);
+        deliveredBefore = started;
+    }
+
+    @Override
+    public LocalDateTime getDeliveredBefore() {
+        return deliveredBefore;
+    }
+
+    @Scheduled(fixedDelayString = "${auth.invalidation.purge-interval-ms:60000}")
+    public void purge() {
+        repository.deleteCreatedBefore(LocalDateTime.now().minus(retention));
+    }
+
+    private void startListener(DataSource dataSource) {
+        Thread thread = new Thread(() -> listen(dataSource), "invalidation-listener");
+        thread.setDaemon(true);
+        listener = thread;
+        thread.start();
+    }
+
+    /**
+     * Holds one connection of the given unpooled data source, on which it waits for notifications and polls whenever
+     * one arrives.
+     */
+    private void listen(DataSource dataSource) {
+        while (listener == Thread.currentThread()) {
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + CHANNEL);
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (listener == Thread.currentThread()) {
+                    if (pgConnection.getNotifications(1000) != null) {
+                        poll();
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                log.warn("Listening for invalidation notifications failed, relying on polling: {}", e.getMessage());
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Thread thread = listener;
+        listener = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
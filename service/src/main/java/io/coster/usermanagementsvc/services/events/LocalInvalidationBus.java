@@ -0,0 +1,65 @@
+package io.coster.usermanagementsvc.services.events;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Delivers events to the listeners of this instance only.
+ */
+@Slf4j
+public class LocalInvalidationBus implements InvalidationBus {
+
+    private final List<Consumer<InvalidationEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(InvalidationEvent event) {
+        deliverAfterCommit(Collections.singletonList(event));
+    }
+
+    @Override
+    public void publishAll(Collection<InvalidationEvent> events) {
+        deliverAfterCommit(events);
+    }
+
+    private void deliverAfterCommit(Collection<InvalidationEvent> events) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    events.forEach(LocalInvalidationBus.this::deliver);
+                }
+            });
+        } else {
+            events.forEach(this::deliver);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<InvalidationEvent> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public LocalDateTime getDeliveredBefore() {
+        // no other instances publish to this bus
+        return LocalDateTime.now();
+    }
+
+    protected void deliver(InvalidationEvent event) {
+        for (Consumer<InvalidationEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                log.error("Invalidation listener failed on {}", event, e);
+            }
+        }
+    }
+}
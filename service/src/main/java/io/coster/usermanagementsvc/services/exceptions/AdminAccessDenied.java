@@ -0,0 +1,7 @@
+package io.coster.usermanagementsvc.services.exceptions;
+
+public class AdminAccessDenied extends RuntimeException {
+    public AdminAccessDenied(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package io.coster.usermanagementsvc.services.exceptions;
+
+public class DatabaseDegraded extends RuntimeException {
+    public DatabaseDegraded(String message) {
+        super(message);
+    }
+}
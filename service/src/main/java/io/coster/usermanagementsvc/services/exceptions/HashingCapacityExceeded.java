@@ -0,0 +1,7 @@
+package io.coster.usermanagementsvc.services.exceptions;
+
+public class HashingCapacityExceeded extends RuntimeException {
+    public HashingCapacityExceeded(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package io.coster.usermanagementsvc.services.exceptions;
+
+public class InvalidImport extends RuntimeException {
+    public InvalidImport(String message) {
+        super(message);
+    }
+}
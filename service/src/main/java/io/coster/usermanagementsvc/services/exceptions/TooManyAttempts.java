@@ -0,0 +1,15 @@
+package io.coster.usermanagementsvc.services.exceptions;
+
+public class TooManyAttempts extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public TooManyAttempts(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
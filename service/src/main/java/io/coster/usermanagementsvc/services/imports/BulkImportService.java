@@ -0,0 +1,297 @@
+package io.coster.usermanagementsvc.services.imports;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.coster.usermanagementsvc.contract.BulkImportProgress;
+import io.coster.usermanagementsvc.contract.RegistrationRequest;
+import io.coster.usermanagementsvc.domain.AuthToken;
+import io.coster.usermanagementsvc.domain.User;
+import io.coster.usermanagementsvc.services.AuthService;
+import io.coster.usermanagementsvc.services.NotificationService;
+import io.coster.usermanagementsvc.services.events.InvalidationBus;
+import io.coster.usermanagementsvc.services.events.InvalidationEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Registers users from a stream of registration requests, {@code admin.import.batch-size} at a time. Users that
+ * already exist are skipped before their passwords are hashed, the remaining passwords are hashed in parallel on a
+ * pool of {@code admin.import.hashing-threads}, and each batch of users, tokens and optionally welcome messages is
+ * inserted with JDBC batches in one transaction.
+ */
+@Slf4j
+@Service
+public class BulkImportService {
+
+    private static final String INSERT_USER = "INSERT INTO users "
+            + "(email_addr, first_name, last_name, password, registered, last_active) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_TOKEN = "INSERT INTO auth_tokens (user_id, auth_token, issued, expiry) VALUES (?, ?, ?, ?)";
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final AuthService authService;
+    private final NotificationService notificationService;
+    private final InvalidationBus invalidationBus;
+    private final PasswordEncoder passwordEncoder;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final ExecutorService hashingPool;
+
+    private final Counter importedRecords;
+    private final Counter skippedRecords;
+    private final Counter failedRecords;
+
+    public BulkImportService(AuthService authService,
+                             NotificationService notificationService,
+                             InvalidationBus invalidationBus,
+                             @Qualifier("hashingPasswordEncoder") PasswordEncoder passwordEncoder,
+                             JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             Validator validator,
+                             ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             @Value("${admin.import.batch-size:1000}") int batchSize,
+                             @Value("${admin.import.hashing-threads:0}") int hashingThreads) {
+        this.authService = authService;
+        this.notificationService = notificationService;
+        this.invalidationBus = invalidationBus;
+        this.passwordEncoder = passwordEncoder;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.hashingPool = Executors.newFixedThreadPool(
+                hashingThreads > 0 ? hashingThreads : Runtime.getRuntime().availableProcessors(),
+                new CustomizableThreadFactory("bulk-import-hashing-"));
+
+        this.importedRecords = meterRegistry.counter("admin.import.records", "result", "imported");
+        this.skippedRecords = meterRegistry.counter("admin.import.records", "result", "skipped");
+        this.failedRecords = meterRegistry.counter("admin.import.records", "result", "failed");
+    }
+
+    /**
+     * Imports every line of the reader, passing the progress to the listener after each batch and once at the end.
+     * Malformed or invalid records are counted as failed and do not stop the import.
+     */
+    public BulkImportProgress importUsers(BufferedReader reader, ImportFormat format, boolean welcomeMessages,
+                                          Consumer<BulkImportProgress> listener) throws IOException {
+        RecordParser parser = format == ImportFormat.CSV
+                ? new CsvRecordParser(reader.readLine())
+                : new JsonRecordParser(objectMapper.reader());
+        Progress progress = new Progress();
+
+        List<RegistrationRequest> batch = new ArrayList<>(batchSize);
+        long lineNumber = format == ImportFormat.CSV ? 1 : 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            progress.processed++;
+            try {
+                RegistrationRequest request = parser.parse(line);
+                Set<ConstraintViolation<RegistrationRequest>> violations = validator.validate(request);
+                if (!violations.isEmpty()) {
+                    throw new IllegalArgumentException(violations.stream()
+                            .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                            .sorted()
+                            .collect(Collectors.joining(", ")));
+                }
+                batch.add(request);
+            } catch (IllegalArgumentException e) {
+                progress.fail("line " + lineNumber + ": " + e.getMessage());
+            }
+            if (batch.size() == batchSize) {
+                importBatch(batch, welcomeMessages, progress);
+                batch.clear();
+                listener.accept(progress.report(false));
+            }
+        }
+        if (!batch.isEmpty()) {
+            importBatch(batch, welcomeMessages, progress);
+        }
+
+        BulkImportProgress result = progress.report(true);
+        listener.accept(result);
+        return result;
+    }
+
+    private void importBatch(List<RegistrationRequest> requests, boolean welcomeMessages, Progress progress) {
+        Map<String, RegistrationRequest> byId = new LinkedHashMap<>();
+        for (RegistrationRequest request : requests) {
+            if (byId.putIfAbsent(request.getEmailAddr(), request) != null) {
+                progress.skip(1);
+            }
+        }
+        Set<String> existing = findExistingUsers(byId.keySet());
+        byId.keySet().removeAll(existing);
+        progress.skip(existing.size());
+        if (byId.isEmpty()) {
+            return;
+        }
+
+        List<User> users = hashPasswords(byId.values());
+        try {
+            insert(users, welcomeMessages);
+        } catch (DuplicateKeyException e) {
+            // users registered concurrently since they were looked up
+            existing = findExistingUsers(users.stream().map(User::getEmailAddr).collect(Collectors.toList()));
+            Set<String> skipped = existing;
+            users.removeIf(user -> skipped.contains(user.getEmailAddr()));
+            progress.skip(existing.size());
+            if (!users.isEmpty()) {
+                insert(users, welcomeMessages);
+            }
+        }
+        progress.imported += users.size();
+        importedRecords.increment(users.size());
+    }
+
+    private Set<String> findExistingUsers(Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(namedJdbcTemplate.queryForList("SELECT email_addr FROM users WHERE email_addr IN (:ids)",
+                Collections.singletonMap("ids", userIds), String.class));
+    }
+
+    private List<User> hashPasswords(Collection<RegistrationRequest> requests) {
+        List<Future<String>> hashes = new ArrayList<>(requests.size());
+        for (RegistrationRequest request : requests) {
+            hashes.add(hashingPool.submit(() -> passwordEncoder.encode(request.getPassword())));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<User> users = new ArrayList<>(requests.size());
+        int i = 0;
+        for (RegistrationRequest request : requests) {
+            users.add(User.builder()
+                    .emailAddr(request.getEmailAddr())
+                    .firstName(request.getFirstName())
+                    .lastName(request.getLastName())
+                    .password(await(hashes.get(i++)))
+                    .registered(now)
+                    .lastActive(now).build());
+        }
+        return users;
+    }
+
+    private static String await(Future<String> hash) {
+        try {
+            return hash.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private void insert(List<User> users, boolean welcomeMessages) {
+        List<Object[]> userRows = new ArrayList<>(users.size());
+        List<Object[]> tokenRows = new ArrayList<>(users.size());
+        List<InvalidationEvent> events = new ArrayList<>(users.size());
+        for (User user : users) {
+            AuthToken token = authService.newToken(user.getEmailAddr(), user.getRegistered());
+            userRows.add(new Object[]{user.getEmailAddr(), user.getFirstName(), user.getLastName(), user.getPassword(),
+                    Timestamp.valueOf(user.getRegistered()), Timestamp.valueOf(user.getLastActive())});
+            tokenRows.add(new Object[]{token.getUserId(), token.getAuthToken(),
+                    Timestamp.valueOf(token.getIssued()), Timestamp.valueOf(token.getExpiry())});
+            events.add(InvalidationEvent.userRegistered(user.getEmailAddr()));
+        }
+        List<String> userIds = users.stream().map(User::getEmailAddr).collect(Collectors.toList());
+
+        transactionTemplate.execute(status -> {
+            jdbcTemplate.batchUpdate(INSERT_USER, userRows);
+            // tokens left behind by users deleted without them
+            namedJdbcTemplate.update("DELETE FROM auth_tokens WHERE user_id IN (:ids)", Collections.singletonMap("ids", userIds));
+            jdbcTemplate.batchUpdate(INSERT_TOKEN, tokenRows);
+            if (welcomeMessages) {
+                notificationService.sendPostRegistrationMessages(users);
+            }
+            invalidationBus.publishAll(events);
+            return null;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashingPool.shutdownNow();
+    }
+
+    private class Progress {
+
+        private final long start = System.nanoTime();
+        private final List<String> errors = new ArrayList<>();
+        private long processed;
+        private long imported;
+        private long skipped;
+        private long failed;
+
+        void skip(int count) {
+            skipped += count;
+            skippedRecords.increment(count);
+        }
+
+        void fail(String error) {
+            failed++;
+            failedRecords.increment();
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(error);
+            }
+        }
+
+        BulkImportProgress report(boolean done) {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double recordsPerSecond = seconds > 0 ? processed / seconds : 0;
+            log.info("Bulk import {}: {} records processed, {} imported, {} skipped, {} failed ({} records/s)",
+                    done ? "finished" : "in progress", processed, imported, skipped, failed, Math.round(recordsPerSecond));
+            return BulkImportProgress.builder()
+                    .processed(processed)
+                    .imported(imported)
+                    .skipped(skipped)
+                    .failed(failed)
+                    .recordsPerSecond(recordsPerSecond)
+                    .done(done)
+                    .errors(done ? errors : null)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package io.coster.usermanagementsvc.services.imports;
+
+import io.coster.usermanagementsvc.contract.RegistrationRequest;
+import io.coster.usermanagementsvc.services.exceptions.InvalidImport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses comma separated lines with the columns named in the header line, in any order. Fields may be quoted with
+ * double quotes, with quotes inside doubled, but may not span lines.
+ */
+class CsvRecordParser implements RecordParser {
+
+    private final int emailAddr;
+    private final int firstName;
+    private final int lastName;
+    private final int password;
+    private final int columns;
+
+    CsvRecordParser(String header) {
+        if (header == null) {
+            throw new InvalidImport("CSV import is missing the header line");
+        }
+        List<String> names = split(header);
+        this.emailAddr = indexOf(names, "emailAddr");
+        this.firstName = indexOf(names, "firstName");
+        this.lastName = indexOf(names, "lastName");
+        this.password = indexOf(names, "password");
+        this.columns = names.size();
+    }
+
+    @Override
+    public RegistrationRequest parse(String line) {
+        List<String> fields = split(line);
+        if (fields.size() != columns) {
+            throw new IllegalArgumentException("expected " + columns + " fields but found " + fields.size());
+        }
+        return RegistrationRequest.builder()
+                .emailAddr(fields.get(emailAddr))
+                .firstName(fields.get(firstName))
+                .lastName(fields.get(lastName))
+                .password(fields.get(password))
+                .build();
+    }
+
+    private static int indexOf(List<String> names, String column) {
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i).trim().equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        throw new InvalidImport("CSV header is missing the " + column + " column");
+    }
+
+    static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,35 @@
+package io.coster.usermanagementsvc.services.imports;
+
+import io.coster.usermanagementsvc.services.exceptions.InvalidImport;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+public enum ImportFormat {
+    /**
+     * One JSON registration request per line.
+     */
+    NDJSON,
+    /**
+     * A header line naming the columns emailAddr, firstName, lastName and password, then one registration per line.
+     */
+    CSV;
+
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+    public static final String CSV_VALUE = "text/csv";
+
+    public static ImportFormat fromContentType(String contentType) {
+        MediaType mediaType;
+        try {
+            mediaType = MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            throw new InvalidImport("Unsupported import content type: " + contentType);
+        }
+        if (mediaType.isCompatibleWith(MediaType.parseMediaType(CSV_VALUE))) {
+            return CSV;
+        }
+        if (mediaType.isCompatibleWith(MediaType.parseMediaType(NDJSON_VALUE))) {
+            return NDJSON;
+        }
+        throw new InvalidImport("Unsupported import content type: " + contentType);
+    }
+}
@@ -0,0 +1,27 @@
+package io.coster.usermanagementsvc.services.imports;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.coster.usermanagementsvc.contract.RegistrationRequest;
+
+import java.io.IOException;
+
+class JsonRecordParser implements RecordParser {
+
+    private final ObjectReader reader;
+
+    JsonRecordParser(ObjectReader reader) {
+        this.reader = reader.forType(RegistrationRequest.class);
+    }
+
+    @Override
+    public RegistrationRequest parse(String line) {
+        try {
+            return reader.readValue(line);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("malformed JSON: " + e.getOriginalMessage(), e);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("malformed JSON: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package io.coster.usermanagementsvc.services.imports;
+
+import io.coster.usermanagementsvc.contract.RegistrationRequest;
+
+/**
+ * Parses one line of an import into a registration request, throwing {@link IllegalArgumentException} if malformed.
+ */
+interface RecordParser {
+
+    RegistrationRequest parse(String line);
+}
@@ -0,0 +1,121 @@
+package io.coster.usermanagementsvc.services.throttle;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.coster.usermanagementsvc.services.exceptions.TooManyAttempts;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limits the endpoints that verify a password or reset token, per user and per client address, so that
+ * brute-force attempts and retry storms are rejected before they cost a password hash. Every attempt is charged to the
+ * client, but only failed ones to the user, so that nobody can lock a user out without knowing their password other
+ * than by guessing at it. Buckets of idle keys are dropped once they would have refilled completely, which is
+ * indistinguishable from keeping them.
+ */
+@Component
+public class LoginThrottle {
+
+    private final boolean enabled;
+    private final Limit userLimit;
+    private final Limit clientLimit;
+    private final LongSupplier clock;
+
+    private final Counter userRejections;
+    private final Counter clientRejections;
+
+    @Autowired
+    public LoginThrottle(MeterRegistry meterRegistry,
+                         @Value("${auth.throttle.enabled:true}") boolean enabled,
+                         @Value("${auth.throttle.user.burst:5}") int userBurst,
+                         @Value("${auth.throttle.user.per-minute:5}") int userPerMinute,
+                         @Value("${auth.throttle.client.burst:20}") int clientBurst,
+                         @Value("${auth.throttle.client.per-minute:60}") int clientPerMinute,
+                         @Value("${auth.throttle.max-keys:1000000}") long maxKeys) {
+        this(meterRegistry, enabled, userBurst, userPerMinute, clientBurst, clientPerMinute, maxKeys, System::nanoTime);
+    }
+
+    LoginThrottle(MeterRegistry meterRegistry, boolean enabled,
+                  int userBurst, int userPerMinute, int clientBurst, int clientPerMinute,
+                  long maxKeys, LongSupplier clock) {
+        this.enabled = enabled;
+        this.clock = clock;
+        this.userLimit = new Limit(userBurst, userPerMinute, maxKeys);
+        this.clientLimit = new Limit(clientBurst, clientPerMinute, maxKeys);
+
+        this.userRejections = Counter.builder("auth.throttle.rejections").tag("key", "user").register(meterRegistry);
+        this.clientRejections = Counter.builder("auth.throttle.rejections").tag("key", "client").register(meterRegistry);
+    }
+
+    /**
+     * Takes one attempt from the bucket of the client, or throws {@link TooManyAttempts}, as it also does when the
+     * user's bucket is empty. The user's bucket is charged by {@link #failed(String)}.
+     */
+    public void acquire(String userId, String clientAddress) {
+        if (!enabled) {
+            return;
+        }
+        long now = clock.getAsLong();
+        long wait = clientLimit.tryAcquire(clientAddress, now);
+        if (wait > 0) {
+            clientRejections.increment();
+            throw new TooManyAttempts("Too many attempts from this client.", toRetryAfterSeconds(wait));
+        }
+        wait = userLimit.peek(userKey(userId), now);
+        if (wait > 0) {
+            userRejections.increment();
+            throw new TooManyAttempts("Too many attempts for this user.", toRetryAfterSeconds(wait));
+        }
+    }
+
+    /**
+     * Charges an attempt whose password or reset token was wrong, or whose user is unknown, to the user's bucket.
+     */
+    public void failed(String userId) {
+        if (!enabled) {
+            return;
+        }
+        userLimit.tryAcquire(userKey(userId), clock.getAsLong());
+    }
+
+    private static String userKey(String userId) {
+        return userId.toLowerCase(Locale.ROOT);
+    }
+
+    private static long toRetryAfterSeconds(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    private static class Limit {
+
+        private final int burst;
+        private final long emissionIntervalNanos;
+        private final Cache<String, TokenBucket> buckets;
+
+        Limit(int burst, int perMinute, long maxKeys) {
+            this.burst = burst;
+            this.emissionIntervalNanos = TimeUnit.MINUTES.toNanos(1) / perMinute;
+            this.buckets = Caffeine.newBuilder()
+                    .expireAfterAccess(Duration.ofNanos(emissionIntervalNanos * burst))
+                    .maximumSize(maxKeys)
+                    .build();
+        }
+
+        long tryAcquire(String key, long now) {
+            return buckets.get(key, k -> new TokenBucket(burst, emissionIntervalNanos, now)).tryAcquire(now);
+        }
+
+        long peek(String key, long now) {
+            TokenBucket bucket = buckets.getIfPresent(key);
+            return bucket == null ? 0 : bucket.peek(now);
+        }
+    }
+}
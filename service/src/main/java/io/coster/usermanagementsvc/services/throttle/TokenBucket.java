@@ -0,0 +1,49 @@
+package io.coster.usermanagementsvc.services.throttle;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket holding up to {@code burst} tokens and refilling one every {@code emissionIntervalNanos}.
+ * The whole state is the time at which the bucket will be full again (the generic cell rate algorithm),
+ * so taking a token is a single compare-and-set.
+ */
+public class TokenBucket {
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong fullAt;
+
+    public TokenBucket(int burst, long emissionIntervalNanos, long now) {
+        this.emissionIntervalNanos = emissionIntervalNanos;
+        this.burstToleranceNanos = emissionIntervalNanos * (burst - 1);
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * Takes a token, returning 0 if one was available or else the nanos until the next one is.
+     */
+    public long tryAcquire(long now) {
+        while (true) {
+            long current = fullAt.get();
+            long start = Math.max(current, now);
+            long wait = waitTime(start, now);
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, start + emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Returns 0 if a token is available, or else the nanos until the next one is, without taking it.
+     */
+    public long peek(long now) {
+        return waitTime(Math.max(fullAt.get(), now), now);
+    }
+
+    private long waitTime(long start, long now) {
+        return start - now - burstToleranceNanos;
+    }
+}
@@ -0,0 +1,188 @@
+package io.coster.usermanagementsvc.services.tokens;
+
+import io.coster.usermanagementsvc.domain.AuthToken;
+import io.coster.usermanagementsvc.domain.InvalidationType;
+import io.coster.usermanagementsvc.services.events.InvalidationEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static io.coster.usermanagementsvc.services.tokens.TokenTable.EXPIRY;
+import static io.coster.usermanagementsvc.services.tokens.TokenTable.ISSUED;
+import static io.coster.usermanagementsvc.services.tokens.TokenTable.LEAST_SIGNIFICANT_BITS;
+import static io.coster.usermanagementsvc.services.tokens.TokenTable.MOST_SIGNIFICANT_BITS;
+
+/**
+ * Write-through, read-through front of another store that keeps UUID tokens in a compact {@link TokenTable}.
+ * Writes go to the delegate and reach the table once the transaction commits. Lookups missing the table are
+ * loaded from the delegate. Tokens that are not UUIDs, such as signed tokens, are only kept by the delegate.
+ * <p>
+ * On multiple instances, {@link #onInvalidation} must receive the events of the jdbc invalidation bus, which
+ * drop the entries replaced on other instances.
+ */
+public class InMemoryTokenStore implements TokenStore {
+
+    private static final int UUID_LENGTH = 36;
+
+    private final TokenStore delegate;
+    private final TokenTable table;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private volatile LocalDateTime lastSweep;
+
+    public InMemoryTokenStore(TokenStore delegate, int expectedTokens, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.table = new TokenTable(expectedTokens);
+
+        Gauge.builder("auth.token.store.size", table, TokenTable::size).register(meterRegistry);
+        Gauge.builder("auth.token.store.capacity", table, TokenTable::capacity).register(meterRegistry);
+    }
+
+    @Override
+    public Optional<AuthToken> find(String userId) {
+        long[] entry = table.get(userId);
+        if (entry != null) {
+            return Optional.of(toToken(userId, entry));
+        }
+        long modCount = table.getModCount();
+        Optional<AuthToken> loaded = delegate.find(userId);
+        loaded.ifPresent(token -> load(modCount, token));
+        return loaded;
+    }
+
+    @Override
+    public Map<String, AuthToken> findAll(Collection<String> userIds) {
+        Map<String, AuthToken> tokens = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String userId : userIds) {
+            long[] entry = table.get(userId);
+            if (entry != null) {
+                tokens.put(userId, toToken(userId, entry));
+            } else {
+                misses.add(userId);
+            }
+        }
+        if (!misses.isEmpty()) {
+            long modCount = table.getModCount();
+            Map<String, AuthToken> loaded = delegate.findAll(misses);
+            loaded.values().forEach(token -> load(modCount, token));
+            tokens.putAll(loaded);
+        }
+        return tokens;
+    }
+
+    @Override
+    public void insert(AuthToken token) {
+        delegate.insert(token);
+        afterCommit(token);
+    }
+
+    @Override
+    public void put(AuthToken token) {
+        delegate.put(token);
+        afterCommit(token);
+    }
+
+    @Override
+    public boolean replace(String previousToken, AuthToken token) {
+        if (!delegate.replace(previousToken, token)) {
+            return false;
+        }
+        afterCommit(token);
+        return true;
+    }
+
+    @Override
+    public int deleteExpired(LocalDateTime now, int limit) {
+        // the reaper passes the same time to every batch of a run, which only needs one sweep of the table
+        if (!now.equals(lastSweep)) {
+            lastSweep = now;
+            table.removeExpired(toEpochMilli(now));
+        }
+        return delegate.deleteExpired(now, limit);
+    }
+
+    /**
+     * Drops the entry of a user whose token was replaced on another instance, to be reloaded on the next lookup.
+     */
+    public void onInvalidation(InvalidationEvent event) {
+        if (event.isRemote() && event.getType() == InvalidationType.TOKEN_REPLACED) {
+            table.remove(event.getUserId());
+        }
+    }
+
+    private void load(long modCount, AuthToken token) {
+        UUID uuid = parseUuid(token.getAuthToken());
+        if (uuid != null) {
+            table.putIfUnmodified(modCount, token.getUserId(), uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(),
+                    toEpochMilli(token.getIssued()), toEpochMilli(token.getExpiry()));
+        }
+    }
+
+    private void afterCommit(AuthToken token) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    store(token);
+                }
+            });
+        } else {
+            store(token);
+        }
+    }
+
+    private void store(AuthToken token) {
+        UUID uuid = parseUuid(token.getAuthToken());
+        if (uuid == null) {
+            // the delegate is the only one to know this token, so it must answer for the user from now on
+            table.remove(token.getUserId());
+        } else {
+            table.put(token.getUserId(), uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(),
+                    toEpochMilli(token.getIssued()), toEpochMilli(token.getExpiry()));
+        }
+    }
+
+    private AuthToken toToken(String userId, long[] entry) {
+        return AuthToken.builder()
+                .userId(userId)
+                .authToken(new UUID(entry[MOST_SIGNIFICANT_BITS], entry[LEAST_SIGNIFICANT_BITS]).toString())
+                .issued(toDateTime(entry[ISSUED]))
+                .expiry(toDateTime(entry[EXPIRY]))
+                .build();
+    }
+
+    /**
+     * Returns the token as a UUID if it is one in canonical form, so that it can be restored exactly.
+     */
+    private static UUID parseUuid(String token) {
+        if (token == null || token.length() != UUID_LENGTH) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(token);
+            return uuid.toString().equals(token) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    private LocalDateTime toDateTime(long epochMilli) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMilli), zone);
+    }
+}
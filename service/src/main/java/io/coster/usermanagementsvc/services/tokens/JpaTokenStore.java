@@ -0,0 +1,56 @@
+package io.coster.usermanagementsvc.services.tokens;
+
+import io.coster.usermanagementsvc.domain.AuthToken;
+import io.coster.usermanagementsvc.repositories.TokenRepository;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps tokens in the auth_tokens table. Writes are single update or insert statements,
+ * as saving an entity with an assigned id would select it first.
+ */
+@RequiredArgsConstructor
+public class JpaTokenStore implements TokenStore {
+
+    private final TokenRepository tokenRepository;
+
+    @Override
+    public Optional<AuthToken> find(String userId) {
+        return tokenRepository.findById(userId);
+    }
+
+    @Override
+    public Map<String, AuthToken> findAll(Collection<String> userIds) {
+        return tokenRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(AuthToken::getUserId, Function.identity()));
+    }
+
+    @Override
+    public void insert(AuthToken token) {
+        tokenRepository.insertToken(token.getUserId(), token.getAuthToken(), token.getIssued(), token.getExpiry());
+    }
+
+    @Override
+    public void put(AuthToken token) {
+        if (tokenRepository.replaceToken(token.getUserId(), token.getAuthToken(), token.getIssued(), token.getExpiry()) == 0) {
+            insert(token);
+        }
+    }
+
+    @Override
+    public boolean replace(String previousToken, AuthToken token) {
+        return tokenRepository.replaceTokenIfMatches(token.getUserId(), previousToken,
+                token.getAuthToken(), token.getIssued(), token.getExpiry()) > 0;
+    }
+
+    @Override
+    public int deleteExpired(LocalDateTime now, int limit) {
+        return tokenRepository.deleteExpired(now, limit);
+    }
+}
@@ -0,0 +1,16 @@
+package io.coster.usermanagementsvc.services.tokens;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+@AllArgsConstructor
+public class SignedToken {
+
+    private final String userId;
+    private final Instant issued;
+    private final Instant expiry;
+
+}
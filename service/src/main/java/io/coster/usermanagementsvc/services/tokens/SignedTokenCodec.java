@@ -0,0 +1,113 @@
+package io.coster.usermanagementsvc.services.tokens;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Issues and verifies tokens of the form {@code v1.<keyId>.<payload>.<signature>}, where the payload carries
+ * the user id, issue time and expiry, and the signature is an HMAC-SHA256 over everything before it.
+ * Any key in {@code auth.token.signing.keys} is accepted for verification, but only the active key is used
+ * for issuing, so keys can be rotated by adding a new key, activating it, and removing the old one once
+ * all tokens signed with it have expired.
+ */
+@Component
+public class SignedTokenCodec {
+
+    private static final String VERSION = "v1";
+    private static final String PREFIX = VERSION + ".";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final Map<String, SecretKeySpec> keys = new HashMap<>();
+    private final String activeKeyId;
+
+    public SignedTokenCodec(@Value("${auth.token.signing.keys:}") String keySpecs,
+                            @Value("${auth.token.signing.active-key:}") String activeKeyId) {
+        for (String keySpec : keySpecs.split(",")) {
+            if (keySpec.isBlank()) {
+                continue;
+            }
+            String[] parts = keySpec.trim().split(":", 2);
+            if (parts.length != 2 || parts[0].contains(".")) {
+                throw new IllegalArgumentException("Signing keys must be given as <keyId>:<base64 secret>");
+            }
+            keys.put(parts[0], new SecretKeySpec(Base64.getDecoder().decode(parts[1]), HMAC_ALGORITHM));
+        }
+        if (!activeKeyId.isEmpty() && !keys.containsKey(activeKeyId)) {
+            throw new IllegalArgumentException("Active signing key is not configured: " + activeKeyId);
+        }
+        this.activeKeyId = activeKeyId;
+    }
+
+    public boolean canIssue() {
+        return !activeKeyId.isEmpty();
+    }
+
+    public boolean isSigned(String token) {
+        return token.startsWith(PREFIX);
+    }
+
+    public String issue(String userId, Instant issued, Instant expiry) {
+        if (!canIssue()) {
+            throw new IllegalStateException("No active signing key is configured.");
+        }
+        String payload = userId + "\n" + issued.toEpochMilli() + "\n" + expiry.toEpochMilli();
+        String unsigned = PREFIX + activeKeyId + "." + ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        return unsigned + "." + ENCODER.encodeToString(sign(keys.get(activeKeyId), unsigned));
+    }
+
+    /**
+     * Returns the contents of the token if it is well-formed and its signature matches one of the configured keys.
+     */
+    public Optional<SignedToken> verify(String token) {
+        if (!isSigned(token)) {
+            return Optional.empty();
+        }
+        String[] parts = token.split("\\.");
+        if (parts.length != 4) {
+            return Optional.empty();
+        }
+        SecretKeySpec key = keys.get(parts[1]);
+        if (key == null) {
+            return Optional.empty();
+        }
+        try {
+            String unsigned = token.substring(0, token.lastIndexOf('.'));
+            if (!MessageDigest.isEqual(sign(key, unsigned), DECODER.decode(parts[3]))) {
+                return Optional.empty();
+            }
+            String[] payload = new String(DECODER.decode(parts[2]), StandardCharsets.UTF_8).split("\n");
+            if (payload.length != 3) {
+                return Optional.empty();
+            }
+            return Optional.of(new SignedToken(payload[0],
+                    Instant.ofEpochMilli(Long.parseLong(payload[1])),
+                    Instant.ofEpochMilli(Long.parseLong(payload[2]))));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static byte[] sign(SecretKeySpec key, String data) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not compute token signature", e);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package io.coster.usermanagementsvc.services.tokens;
+
+public enum TokenMode {
+
+    /**
+     * Random UUID tokens which are only meaningful through their auth_tokens row.
+     */
+    OPAQUE,
+
+    /**
+     * HMAC-signed tokens carrying the user id, issue time and expiry, verifiable without a storage lookup.
+     */
+    SIGNED
+}
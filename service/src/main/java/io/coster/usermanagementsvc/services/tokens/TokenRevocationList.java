@@ -0,0 +1,91 @@
+package io.coster.usermanagementsvc.services.tokens;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.coster.usermanagementsvc.domain.InvalidationType;
+import io.coster.usermanagementsvc.services.events.InvalidationBus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks signed tokens killed before their expiry. Since each user only has one current token, it is enough
+ * to remember per user the time before which every issued token is revoked. Entries are kept for as long as
+ * a token can live, after which every token they would revoke has expired anyway.
+ * <p>
+ * Tokens are revoked whenever the token of the user is replaced on any instance. Replacements from before this
+ * instance started are read from the token table before it serves requests: every signed token of a user issued before
+ * the one stored is revoked.
+ */
+@Slf4j
+@Component
+public class TokenRevocationList {
+
+    private final Cache<String, Instant> revokedBefore;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean signedTokens;
+    private final Duration retention;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final AtomicBoolean seeded = new AtomicBoolean();
+
+    public TokenRevocationList(@Value("${auth.token.revocation.retention-hours:24}") long retentionHours,
+                               @Value("${auth.token.mode:opaque}") TokenMode tokenMode,
+                               JdbcTemplate jdbcTemplate,
+                               InvalidationBus invalidationBus) {
+        this.retention = Duration.ofHours(retentionHours);
+        this.revokedBefore = Caffeine.newBuilder()
+                .expireAfterWrite(retention)
+                .build();
+        this.jdbcTemplate = jdbcTemplate;
+        this.signedTokens = tokenMode == TokenMode.SIGNED;
+
+        invalidationBus.subscribe(event -> {
+            if (event.getType() == InvalidationType.TOKEN_REPLACED) {
+                revokeIssuedBefore(event.getUserId(), event.getIssued().atZone(zone).toInstant());
+            }
+        });
+    }
+
+    /**
+     * Revokes the tokens issued before the stored token of each user issued within the retention. Runs before the web
+     * server starts; replacements committed meanwhile also arrive through the bus, the later revocation wins.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void seed() {
+        if (!signedTokens || !seeded.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        AtomicLong count = new AtomicLong();
+        jdbcTemplate.query("SELECT user_id, issued FROM auth_tokens WHERE issued > ?",
+                rs -> {
+                    revokeIssuedBefore(rs.getString(1), rs.getTimestamp(2).toLocalDateTime().atZone(zone).toInstant());
+                    count.incrementAndGet();
+                },
+                Timestamp.valueOf(LocalDateTime.now().minus(retention)));
+        log.info("Seeded token revocations of {} users in {} ms", count.get(), System.currentTimeMillis() - start);
+    }
+
+    public void revokeIssuedBefore(String userId, Instant issued) {
+        // tokens carry their issue time in millis, so a replacement token issued at this instant must not be revoked
+        Instant instant = issued.truncatedTo(ChronoUnit.MILLIS);
+        revokedBefore.asMap().merge(userId, instant, (previous, current) -> current.isAfter(previous) ? current : previous);
+    }
+
+    public boolean isRevoked(SignedToken token) {
+        Instant instant = revokedBefore.getIfPresent(token.getUserId());
+        return instant != null && token.getIssued().isBefore(instant);
+    }
+}
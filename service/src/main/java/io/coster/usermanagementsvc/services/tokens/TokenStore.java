@@ -0,0 +1,43 @@
+package io.coster.usermanagementsvc.services.tokens;
+
+import io.coster.usermanagementsvc.domain.AuthToken;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Storage of the current token of each user. Writes join the caller's transaction where there is one.
+ */
+public interface TokenStore {
+
+    Optional<AuthToken> find(String userId);
+
+    /**
+     * Returns the tokens of those of the given users that have one, by user id.
+     */
+    Map<String, AuthToken> findAll(Collection<String> userIds);
+
+    /**
+     * Stores the token of a user known not to have one yet.
+     */
+    void insert(AuthToken token);
+
+    /**
+     * Stores the token, replacing any previous token of the user. If a concurrent put inserted the first token of the
+     * user, this may fail with a {@link org.springframework.dao.DataIntegrityViolationException}, after which
+     * retrying in a new transaction replaces that token.
+     */
+    void put(AuthToken token);
+
+    /**
+     * Replaces the token of the user only if it is still {@code previousToken}, returning whether it was replaced.
+     */
+    boolean replace(String previousToken, AuthToken token);
+
+    /**
+     * Deletes up to {@code limit} tokens that expired before {@code now}, returning how many were deleted.
+     */
+    int deleteExpired(LocalDateTime now, int limit);
+}
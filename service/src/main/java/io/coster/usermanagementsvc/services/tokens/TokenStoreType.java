@@ -0,0 +1,12 @@
+package io.coster.usermanagementsvc.services.tokens;
+
+public enum TokenStoreType {
+    /**
+     * Tokens are only kept in the auth_tokens table.
+     */
+    JPA,
+    /**
+     * Tokens are also kept in memory, in front of the auth_tokens table. Only for single instance deployments.
+     */
+    MEMORY
+}
@@ -0,0 +1,278 @@
+package io.coster.usermanagementsvc.services.tokens;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Open-addressing hash table from user id to a 128-bit token id with its issue and expiry time in epoch millis.
+ * The four longs of each entry sit next to each other in one array, so that an entry costs 32 bytes plus the
+ * reference to the user id, instead of an entity with a string token and two date-time objects.
+ * <p>
+ * Lookups are optimistic reads that only take the lock if they raced with a write.
+ */
+class TokenTable {
+
+    static final int MOST_SIGNIFICANT_BITS = 0;
+    static final int LEAST_SIGNIFICANT_BITS = 1;
+    static final int ISSUED = 2;
+    static final int EXPIRY = 3;
+
+    private static final int ENTRY_LONGS = 4;
+    private static final double MAX_LOAD = 0.7;
+    private static final int SWEEP_CHUNK_SLOTS = 4096;
+
+    private final StampedLock lock = new StampedLock();
+    private Slots slots;
+    private int size;
+    private long modCount;
+
+    TokenTable(int expectedSize) {
+        this.slots = new Slots(capacityFor(expectedSize));
+    }
+
+    /**
+     * Returns a copy of the entry of the user, indexed by the constants of this class, or null if there is none.
+     */
+    long[] get(String userId) {
+        long stamp = lock.tryOptimisticRead();
+        long[] entry = slots.copy(userId);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                entry = slots.copy(userId);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Returns a number that changes with every write, see {@link #putIfUnmodified}.
+     */
+    long getModCount() {
+        long stamp = lock.readLock();
+        try {
+            return modCount;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    void put(String userId, long mostSigBits, long leastSigBits, long issued, long expiry) {
+        long stamp = lock.writeLock();
+        try {
+            insert(userId, mostSigBits, leastSigBits, issued, expiry);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Puts the entry only if the table has not been written since {@link #getModCount} returned {@code expectedModCount}
+     * and it has no entry for the user, so that a value read from elsewhere cannot overwrite a newer write.
+     */
+    boolean putIfUnmodified(long expectedModCount, String userId, long mostSigBits, long leastSigBits,
+                            long issued, long expiry) {
+        long stamp = lock.writeLock();
+        try {
+            if (modCount != expectedModCount || slots.indexOf(userId) >= 0) {
+                return false;
+            }
+            insert(userId, mostSigBits, leastSigBits, issued, expiry);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void remove(String userId) {
+        long stamp = lock.writeLock();
+        try {
+            int index = slots.indexOf(userId);
+            if (index >= 0) {
+                slots.delete(index);
+                size--;
+            }
+            modCount++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes every entry that expired before the given epoch millis, returning how many were removed. The slots are
+     * swept in chunks, each under the write lock, so that lookups and writes wait for one chunk at most rather than
+     * for the whole table. Entries moved by a resize between two chunks may be left for the next sweep.
+     */
+    int removeExpired(long now) {
+        int removed = 0;
+        for (int start = 0; start < capacity(); start += SWEEP_CHUNK_SLOTS) {
+            removed += removeExpired(now, start);
+        }
+        return removed;
+    }
+
+    private int removeExpired(long now, int start) {
+        long stamp = lock.writeLock();
+        try {
+            List<String> expired = new ArrayList<>();
+            int end = Math.min(start + SWEEP_CHUNK_SLOTS, slots.keys.length);
+            // on to the end of the last cluster, whose entries deleting may move back into the chunk
+            for (int n = start, i = start; n < slots.keys.length && (n < end || slots.keys[i] != null);
+                 n++, i = (i + 1) & slots.mask) {
+                if (slots.keys[i] != null && slots.values[i * ENTRY_LONGS + EXPIRY] < now) {
+                    expired.add(slots.keys[i]);
+                }
+            }
+            // removed by key, as deleting shifts entries around
+            for (String userId : expired) {
+                slots.delete(slots.indexOf(userId));
+            }
+            if (!expired.isEmpty()) {
+                size -= expired.size();
+                modCount++;
+            }
+            return expired.size();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    int capacity() {
+        long stamp = lock.readLock();
+        try {
+            return slots.keys.length;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void insert(String userId, long mostSigBits, long leastSigBits, long issued, long expiry) {
+        modCount++;
+        if (slots.set(userId, mostSigBits, leastSigBits, issued, expiry)) {
+            size++;
+            if (size > slots.keys.length * MAX_LOAD) {
+                resize();
+            }
+        }
+    }
+
+    private void resize() {
+        Slots old = slots;
+        Slots resized = new Slots(old.keys.length * 2);
+        for (int i = 0; i < old.keys.length; i++) {
+            if (old.keys[i] != null) {
+                int offset = i * ENTRY_LONGS;
+                resized.set(old.keys[i], old.values[offset + MOST_SIGNIFICANT_BITS], old.values[offset + LEAST_SIGNIFICANT_BITS],
+                        old.values[offset + ISSUED], old.values[offset + EXPIRY]);
+            }
+        }
+        slots = resized;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity * MAX_LOAD < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * The arrays of the table, replaced as a whole on resize so that an optimistic read never sees a mismatched pair.
+     * Entries are probed linearly and deleted by shifting back the entries that follow them.
+     */
+    private static class Slots {
+
+        private final String[] keys;
+        private final long[] values;
+        private final int mask;
+
+        Slots(int capacity) {
+            this.keys = new String[capacity];
+            this.values = new long[capacity * ENTRY_LONGS];
+            this.mask = capacity - 1;
+        }
+
+        int indexOf(String userId) {
+            int index = home(userId);
+            // bounded, an optimistic read may probe a table that is being written
+            for (int probes = 0; probes < keys.length; probes++) {
+                String key = keys[index];
+                if (key == null) {
+                    return -1;
+                }
+                if (key.equals(userId)) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+
+        long[] copy(String userId) {
+            int index = indexOf(userId);
+            if (index < 0) {
+                return null;
+            }
+            long[] entry = new long[ENTRY_LONGS];
+            System.arraycopy(values, index * ENTRY_LONGS, entry, 0, ENTRY_LONGS);
+            return entry;
+        }
+
+        /**
+         * Sets the entry of the user, returning true if it was added rather than replaced.
+         */
+        boolean set(String userId, long mostSigBits, long leastSigBits, long issued, long expiry) {
+            int index = home(userId);
+            boolean added = true;
+            while (keys[index] != null) {
+                if (keys[index].equals(userId)) {
+                    added = false;
+                    break;
+                }
+                index = (index + 1) & mask;
+            }
+            int offset = index * ENTRY_LONGS;
+            values[offset + MOST_SIGNIFICANT_BITS] = mostSigBits;
+            values[offset + LEAST_SIGNIFICANT_BITS] = leastSigBits;
+            values[offset + ISSUED] = issued;
+            values[offset + EXPIRY] = expiry;
+            keys[index] = userId;
+            return added;
+        }
+
+        void delete(int index) {
+            int hole = index;
+            int next = (hole + 1) & mask;
+            while (keys[next] != null) {
+                int home = home(keys[next]);
+                // move the entry into the hole unless its home lies cyclically in (hole, next]
+                boolean reachable = hole <= next ? (home > hole && home <= next) : (home > hole || home <= next);
+                if (!reachable) {
+                    keys[hole] = keys[next];
+                    System.arraycopy(values, next * ENTRY_LONGS, values, hole * ENTRY_LONGS, ENTRY_LONGS);
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[hole] = null;
+        }
+
+        private int home(String userId) {
+            int hash = userId.hashCode() * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+CREATE TABLE IF NOT EXISTS users (email_addr varchar(255) NOT NULL, first_name varchar(255), last_active timestamp, last_name varchar(255), password varchar(255), registered timestamp, PRIMARY KEY (email_addr));
+CREATE TABLE IF NOT EXISTS auth_tokens (user_id varchar(255) NOT NULL, auth_token varchar(255), expiry timestamp, issued timestamp, PRIMARY KEY (user_id));
+CREATE TABLE IF NOT EXISTS notification_outbox (id bigserial NOT NULL, attempts int4 NOT NULL, created timestamp, next_attempt timestamp, payload varchar(2048), type varchar(255), PRIMARY KEY (id));
+CREATE TABLE IF NOT EXISTS invalidation_events (id bigserial NOT NULL, created timestamp, issued timestamp, origin varchar(255), type varchar(255), user_id varchar(255), PRIMARY KEY (id));
+CREATE INDEX IF NOT EXISTS idx_auth_tokens_expiry ON auth_tokens (expiry);
+CREATE INDEX IF NOT EXISTS idx_notification_outbox_next_attempt ON notification_outbox (next_attempt);
+CREATE INDEX IF NOT EXISTS idx_invalidation_events_created ON invalidation_events (created);
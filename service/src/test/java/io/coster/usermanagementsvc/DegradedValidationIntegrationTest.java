@@ -0,0 +1,182 @@
+package io.coster.usermanagementsvc;
+
+import io.coster.usermanagementsvc.contract.AuthenticationResponse;
+import io.coster.usermanagementsvc.contract.BatchValidationRequest;
+import io.coster.usermanagementsvc.contract.LoginRequest;
+import io.coster.usermanagementsvc.contract.RegistrationRequest;
+import io.coster.usermanagementsvc.contract.ValidationRequest;
+import io.coster.usermanagementsvc.services.degraded.DegradedMode;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Simulates a hanging database by holding every connection of the pool, so that token lookups wait for a connection
+ * until they time out.
+ */
+public class DegradedValidationIntegrationTest {
+
+    private static final int POOL_SIZE = 2;
+
+    private static ConfigurableApplicationContext instance;
+
+    private final TestRestTemplate restTemplate = new TestRestTemplate();
+    private final List<Connection> heldConnections = new ArrayList<>();
+
+    @BeforeClass
+    public static void startInstance() {
+        instance = new SpringApplicationBuilder(UserManagementSvcApplication.class).run(
+                "--server.port=0",
+                "--spring.jmx.enabled=false",
+                "--spring.datasource.url=jdbc:h2:mem:degraded;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.datasource.initialization-mode=never",
+                "--spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                "--spring.datasource.hikari.connection-timeout=10000",
+                "--management.endpoint.health.show-details=always",
+                "--notification.outbox.dispatcher.enabled=false",
+                "--auth.token.reaper.enabled=false",
+                "--auth.token.cache.enabled=false",
+                "--auth.degraded.lookup-timeout-ms=200");
+    }
+
+    @AfterClass
+    public static void stopInstance() {
+        instance.close();
+    }
+
+    @After
+    public void releaseDatabase() throws Exception {
+        for (Connection connection : heldConnections) {
+            connection.close();
+        }
+        // lookups reaching the database in time end the degradation
+        DegradedMode degradedMode = instance.getBean(DegradedMode.class);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (degradedMode.isDegraded() && System.nanoTime() < deadline) {
+            validate("degraded-recovery@test.com", "recovery-token");
+            Thread.sleep(10);
+        }
+        assertThat(degradedMode.isDegraded()).isFalse();
+    }
+
+    @Test
+    public void validatedTokenWhileDatabaseHangs_AnsweredFromLastKnownGood() throws Exception {
+        insertToken("degraded-valid@test.com", "valid-token", LocalDateTime.now().plusHours(1));
+        assertThat(validate("degraded-valid@test.com", "valid-token").getBody().isValid()).isTrue();
+        assertThat(degradedModeHealth()).contains("\"status\":\"UP\"");
+
+        holdDatabase();
+        long start = System.nanoTime();
+        ResponseEntity<AuthenticationResponse> response = validate("degraded-valid@test.com", "valid-token");
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(2000);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().isValid()).isTrue();
+        assertThat(degradedModeHealth()).contains("\"status\":\"DEGRADED\"");
+        // further requests are answered without waiting for the lookup
+        start = System.nanoTime();
+        assertThat(validate("degraded-valid@test.com", "valid-token").getBody().isValid()).isTrue();
+        assertThat(validate("degraded-valid@test.com", "other-token").getBody().isValid()).isFalse();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(150);
+        assertThat(validateAll(new ValidationRequest("degraded-valid@test.com", "valid-token"),
+                new ValidationRequest("degraded-valid@test.com", "other-token")))
+                .containsExactly(true, false);
+    }
+
+    @Test
+    public void unknownTokenWhileDatabaseHangs_ServiceUnavailable() throws Exception {
+        insertToken("degraded-unknown@test.com", "unknown-token", LocalDateTime.now().plusHours(1));
+
+        holdDatabase();
+        ResponseEntity<AuthenticationResponse> response = validate("degraded-unknown@test.com", "unknown-token");
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+    }
+
+    @Test
+    public void expiredTokenWhileDatabaseHangs_Rejected() throws Exception {
+        insertToken("degraded-expired@test.com", "expiring-token", LocalDateTime.now().plusSeconds(1));
+        assertThat(validate("degraded-expired@test.com", "expiring-token").getBody().isValid()).isTrue();
+        Thread.sleep(1100);
+
+        holdDatabase();
+        ResponseEntity<AuthenticationResponse> response = validate("degraded-expired@test.com", "expiring-token");
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().isValid()).isFalse();
+    }
+
+    @Test
+    public void replacedTokenWhileDatabaseHangs_Rejected() throws Exception {
+        AuthenticationResponse registered = restTemplate.postForObject(url("/auth/register"),
+                RegistrationRequest.builder()
+                        .emailAddr("degraded-login@test.com")
+                        .firstName("Mike")
+                        .lastName("Anderson")
+                        .password("password123").build(), AuthenticationResponse.class);
+        assertThat(validate("degraded-login@test.com", registered.getAuthToken()).getBody().isValid()).isTrue();
+        AuthenticationResponse loggedIn = restTemplate.postForObject(url("/auth/login"),
+                LoginRequest.builder().emailAddr("degraded-login@test.com").password("password123").build(),
+                AuthenticationResponse.class);
+        assertThat(validate("degraded-login@test.com", loggedIn.getAuthToken()).getBody().isValid()).isTrue();
+
+        holdDatabase();
+
+        assertThat(validate("degraded-login@test.com", registered.getAuthToken()).getBody().isValid()).isFalse();
+        assertThat(validate("degraded-login@test.com", loggedIn.getAuthToken()).getBody().isValid()).isTrue();
+    }
+
+    private void holdDatabase() throws SQLException {
+        DataSource dataSource = instance.getBean("dataSource", DataSource.class);
+        for (int i = 0; i < POOL_SIZE; i++) {
+            heldConnections.add(dataSource.getConnection());
+        }
+    }
+
+    private void insertToken(String userId, String token, LocalDateTime expiry) {
+        new JdbcTemplate(instance.getBean("dataSource", DataSource.class)).update(
+                "INSERT INTO auth_tokens (user_id, auth_token, issued, expiry) VALUES (?, ?, ?, ?)",
+                userId, token, LocalDateTime.now(), expiry);
+    }
+
+    private ResponseEntity<AuthenticationResponse> validate(String userId, String token) {
+        return restTemplate.postForEntity(url("/auth/validate"), new ValidationRequest(userId, token),
+                AuthenticationResponse.class);
+    }
+
+    private List<Boolean> validateAll(ValidationRequest... requests) {
+        AuthenticationResponse[] responses = restTemplate.postForObject(url("/auth/validate/batch"),
+                new BatchValidationRequest(Arrays.asList(requests)), AuthenticationResponse[].class);
+        return Arrays.stream(responses).map(AuthenticationResponse::isValid).collect(Collectors.toList());
+    }
+
+    private String degradedModeHealth() {
+        return restTemplate.getForObject(url("/actuator/health/degradedMode"), String.class);
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + instance.getEnvironment().getProperty("local.server.port") + path;
+    }
+}
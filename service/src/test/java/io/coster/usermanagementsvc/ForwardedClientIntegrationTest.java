@@ -0,0 +1,63 @@
+package io.coster.usermanagementsvc;
+
+import io.coster.usermanagementsvc.contract.ErrorResponse;
+import io.coster.usermanagementsvc.contract.LoginRequest;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the prod profile behind a simulated load balancer on the loopback address, so that every request comes from
+ * the same proxy.
+ */
+public class ForwardedClientIntegrationTest {
+
+    private static final int CLIENT_BURST = 2;
+
+    private static ConfigurableApplicationContext instance;
+
+    private final TestRestTemplate restTemplate = new TestRestTemplate();
+
+    @BeforeClass
+    public static void startInstance() {
+        instance = new SpringApplicationBuilder(UserManagementSvcApplication.class).run(
+                "--spring.profiles.active=prod",
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:forwarded;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--notification.outbox.dispatcher.enabled=false",
+                "--auth.throttle.client.burst=" + CLIENT_BURST);
+    }
+
+    @AfterClass
+    public static void stopInstance() {
+        instance.close();
+    }
+
+    @Test
+    public void loginsOfClientsBehindProxy_ThrottledPerClient() {
+        for (int i = 0; i < CLIENT_BURST; i++) {
+            assertThat(login("203.0.113.1", "forwarded" + i + "@test.com")).isEqualTo(HttpStatus.BAD_REQUEST);
+        }
+        assertThat(login("203.0.113.1", "forwarded@test.com")).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+
+        assertThat(login("203.0.113.2", "forwarded@test.com")).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    private HttpStatus login(String clientAddress, String emailAddr) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Forwarded-For", clientAddress);
+        LoginRequest request = LoginRequest.builder().emailAddr(emailAddr).password("secretive123").build();
+        return restTemplate.postForEntity(
+                "http://localhost:" + instance.getEnvironment().getProperty("local.server.port") + "/auth/login",
+                new HttpEntity<>(request, headers), ErrorResponse.class).getStatusCode();
+    }
+}
@@ -0,0 +1,178 @@
+package io.coster.usermanagementsvc;
+
+import io.coster.usermanagementsvc.contract.AuthenticationResponse;
+import io.coster.usermanagementsvc.contract.LoginRequest;
+import io.coster.usermanagementsvc.contract.PasswordResetRequest;
+import io.coster.usermanagementsvc.contract.RegistrationRequest;
+import io.coster.usermanagementsvc.contract.ValidationRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs two instances on one database, which only learn about each other's changes through the jdbc invalidation bus.
+ */
+public class InvalidationBusIntegrationTest {
+
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private static ConfigurableApplicationContext instanceA;
+    private static ConfigurableApplicationContext instanceB;
+
+    private final TestRestTemplate restTemplate = new TestRestTemplate();
+
+    @BeforeClass
+    public static void startInstances() {
+        instanceA = start();
+        instanceB = start();
+    }
+
+    @AfterClass
+    public static void stopInstances() {
+        instanceB.close();
+        instanceA.close();
+    }
+
+    private static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(UserManagementSvcApplication.class).run(
+                "--server.port=0",
+                "--spring.jmx.enabled=false",
+                "--spring.datasource.url=jdbc:h2:mem:bus;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.datasource.initialization-mode=never",
+                "--notification.outbox.dispatcher.enabled=false",
+                "--auth.user-filter.enabled=true",
+                "--auth.token.store=memory",
+                "--auth.user-cache.enabled=true",
+                "--auth.invalidation.bus=jdbc",
+                "--auth.invalidation.poll-interval-ms=" + POLL_INTERVAL_MS);
+    }
+
+    @Test
+    public void registerOnOneInstance_UserKnownToOtherWithinPollInterval() {
+        AuthenticationResponse registered = register(instanceA, "bus-register@test.com", "password123");
+        long registeredAt = System.currentTimeMillis();
+
+        assertThat(awaitValidity(instanceB, "bus-register@test.com", registered.getAuthToken(), true)).isTrue();
+        assertThat(System.currentTimeMillis() - registeredAt).isLessThan(20 * POLL_INTERVAL_MS);
+        assertThat(login(instanceB, "bus-register@test.com", "password123").getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    public void unknownUserOnInstanceKeepingUpWithBus_RejectedByFilter() {
+        MeterRegistry meterRegistry = instanceB.getBean(MeterRegistry.class);
+        double rejections = meterRegistry.counter("auth.user.filter.rejections").count();
+        double untrustedMisses = meterRegistry.counter("auth.user.filter.untrusted-misses").count();
+
+        assertThat(validate(instanceB, "bus-unknown@test.com", "token")).isFalse();
+
+        assertThat(meterRegistry.counter("auth.user.filter.rejections").count()).isEqualTo(rejections + 1);
+        assertThat(meterRegistry.counter("auth.user.filter.untrusted-misses").count()).isEqualTo(untrustedMisses);
+    }
+
+    @Test
+    public void loginOnOneInstance_OtherRejectsReplacedTokenWithinPollInterval() {
+        AuthenticationResponse registered = register(instanceA, "bus-login@test.com", "password123");
+        // cached on instance B
+        assertThat(awaitValidity(instanceB, "bus-login@test.com", registered.getAuthToken(), true)).isTrue();
+        assertThat(validate(instanceB, "bus-login@test.com", registered.getAuthToken())).isTrue();
+
+        AuthenticationResponse loggedIn = restTemplate.postForObject(url(instanceA, "/auth/login"),
+                LoginRequest.builder().emailAddr("bus-login@test.com").password("password123").build(),
+                AuthenticationResponse.class);
+        long replaced = System.currentTimeMillis();
+
+        assertThat(awaitValidity(instanceB, "bus-login@test.com", registered.getAuthToken(), false)).isTrue();
+        assertThat(System.currentTimeMillis() - replaced).isLessThan(20 * POLL_INTERVAL_MS);
+        assertThat(validate(instanceB, "bus-login@test.com", loggedIn.getAuthToken())).isTrue();
+    }
+
+    @Test
+    public void passwordResetOnOneInstance_OtherRejectsOldPassword() {
+        AuthenticationResponse registered = register(instanceA, "bus-reset@test.com", "password123");
+        assertThat(awaitValidity(instanceB, "bus-reset@test.com", registered.getAuthToken(), true)).isTrue();
+        // user cached on instance B
+        ResponseEntity<AuthenticationResponse> loggedIn = login(instanceB, "bus-reset@test.com", "password123");
+        assertThat(loggedIn.getStatusCode()).isEqualTo(HttpStatus.OK);
+        // the reset on instance A checks against the token of that login
+        assertThat(awaitValidity(instanceA, "bus-reset@test.com", loggedIn.getBody().getAuthToken(), true)).isTrue();
+
+        restTemplate.postForObject(url(instanceA, "/auth/pwdreset"), PasswordResetRequest.builder()
+                .userId("bus-reset@test.com")
+                .token(loggedIn.getBody().getAuthToken())
+                .password("newpassword").build(), AuthenticationResponse.class);
+
+        // the password change reaches instance B before the token replacement
+        assertThat(awaitValidity(instanceB, "bus-reset@test.com", loggedIn.getBody().getAuthToken(), false)).isTrue();
+        assertThat(login(instanceB, "bus-reset@test.com", "password123").getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(login(instanceB, "bus-reset@test.com", "newpassword").getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    public void userCacheOnLocalBus_RefusesToStart() {
+        assertThatThrownBy(() -> new SpringApplicationBuilder(UserManagementSvcApplication.class).run(
+                "--server.port=0",
+                "--spring.jmx.enabled=false",
+                "--spring.datasource.url=jdbc:h2:mem:localbus;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.datasource.initialization-mode=never",
+                "--notification.outbox.dispatcher.enabled=false",
+                "--auth.user-cache.enabled=true",
+                "--auth.invalidation.bus=local"))
+                .hasRootCauseInstanceOf(IllegalStateException.class)
+                .hasStackTraceContaining("auth.invalidation.bus=jdbc");
+    }
+
+    private ResponseEntity<AuthenticationResponse> login(ConfigurableApplicationContext instance, String emailAddr,
+                                                         String password) {
+        return restTemplate.postForEntity(url(instance, "/auth/login"),
+                LoginRequest.builder().emailAddr(emailAddr).password(password).build(), AuthenticationResponse.class);
+    }
+
+    private AuthenticationResponse register(ConfigurableApplicationContext instance, String emailAddr, String password) {
+        RegistrationRequest request = RegistrationRequest.builder()
+                .emailAddr(emailAddr)
+                .firstName("Mike")
+                .lastName("Anderson")
+                .password(password).build();
+        return restTemplate.postForObject(url(instance, "/auth/register"), request, AuthenticationResponse.class);
+    }
+
+    private boolean validate(ConfigurableApplicationContext instance, String userId, String token) {
+        AuthenticationResponse response = restTemplate.postForObject(url(instance, "/auth/validate"),
+                new ValidationRequest(userId, token), AuthenticationResponse.class);
+        return response.isValid();
+    }
+
+    private boolean awaitValidity(ConfigurableApplicationContext instance, String userId, String token, boolean valid) {
+        long deadline = System.currentTimeMillis() + 50 * POLL_INTERVAL_MS;
+        while (System.currentTimeMillis() < deadline) {
+            if (validate(instance, userId, token) == valid) {
+                return true;
+            }
+            sleep(POLL_INTERVAL_MS / 10);
+        }
+        return false;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String url(ConfigurableApplicationContext instance, String path) {
+        return "http://localhost:" + instance.getEnvironment().getProperty("local.server.port") + path;
+    }
+}
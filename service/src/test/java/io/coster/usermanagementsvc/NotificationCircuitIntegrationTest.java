@@ -0,0 +1,154 @@
+package io.coster.usermanagementsvc;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.http.Fault;
+import com.github.tomakehurst.wiremock.verification.LoggedRequest;
+import io.coster.usermanagementsvc.contract.RegistrationRequest;
+import io.coster.usermanagementsvc.domain.OutboxMessage;
+import io.coster.usermanagementsvc.repositories.OutboxRepository;
+import io.coster.usermanagementsvc.services.AuthService;
+import io.coster.usermanagementsvc.services.NotificationDispatcher;
+import io.coster.usermanagementsvc.services.circuit.CircuitBreaker;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the outbox dispatcher against a notification-svc that hangs or drops connections, checking that the read
+ * timeout bounds each call and that the open circuit keeps the remaining messages in the outbox untouched, and
+ * that dispatchers draining the outbox at the same time send each message once.
+ */
+public class NotificationCircuitIntegrationTest {
+
+    private static final String POST_REGISTER_PATH = "/notification/postregister";
+
+    private static final AtomicInteger users = new AtomicInteger();
+
+    private static WireMockServer notificationService;
+    private static ConfigurableApplicationContext instance;
+
+    private NotificationDispatcher dispatcher;
+    private OutboxRepository outboxRepository;
+    private CircuitBreaker circuitBreaker;
+
+    @BeforeClass
+    public static void startInstance() {
+        notificationService = new WireMockServer(wireMockConfig().dynamicPort());
+        notificationService.start();
+        instance = new SpringApplicationBuilder(UserManagementSvcApplication.class).run(
+                "--server.port=0",
+                "--spring.jmx.enabled=false",
+                "--spring.datasource.url=jdbc:h2:mem:notification;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.datasource.initialization-mode=never",
+                "--notification.service.url=http://localhost:" + notificationService.port(),
+                "--notification.outbox.poll-interval-ms=3600000",
+                "--notification.outbox.max-in-flight=1",
+                "--notification.outbox.initial-backoff-ms=0",
+                "--notification.http.read-timeout-ms=200",
+                "--notification.circuit.failure-threshold=2",
+                "--notification.circuit.open-ms=500");
+    }
+
+    @AfterClass
+    public static void stopInstance() {
+        instance.close();
+        notificationService.stop();
+    }
+
+    @Before
+    public void setUp() {
+        dispatcher = instance.getBean(NotificationDispatcher.class);
+        outboxRepository = instance.getBean(OutboxRepository.class);
+        circuitBreaker = instance.getBean("notificationCircuitBreaker", CircuitBreaker.class);
+        notificationService.resetMappings();
+        notificationService.resetRequests();
+        outboxRepository.deleteAll();
+        circuitBreaker.onSuccess();
+    }
+
+    @Test
+    public void hangingNotificationService_CircuitOpensAndHoldsBackTheRest() throws Exception {
+        notificationService.stubFor(post(urlEqualTo(POST_REGISTER_PATH))
+                .willReturn(aResponse().withStatus(200).withFixedDelay(2000)));
+        register(3);
+
+        long start = System.nanoTime();
+        dispatcher.drain();
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1500);
+        assertThat(sentRequests()).isEqualTo(2);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(outboxRepository.findAll()).extracting(OutboxMessage::getAttempts).containsExactlyInAnyOrder(1, 1, 0);
+
+        dispatcher.drain();
+        assertThat(sentRequests()).isEqualTo(2);
+
+        notificationService.resetMappings();
+        notificationService.stubFor(post(urlEqualTo(POST_REGISTER_PATH)).willReturn(aResponse().withStatus(200)));
+        Thread.sleep(600);
+        dispatcher.drain();
+
+        assertThat(outboxRepository.count()).isZero();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void droppedConnections_CircuitOpens() {
+        notificationService.stubFor(post(urlEqualTo(POST_REGISTER_PATH))
+                .willReturn(aResponse().withFault(Fault.EMPTY_RESPONSE)));
+        register(3);
+
+        dispatcher.drain();
+
+        assertThat(sentRequests()).isEqualTo(2);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(outboxRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    public void concurrentDrains_EachMessageSentOnce() throws Exception {
+        notificationService.stubFor(post(urlEqualTo(POST_REGISTER_PATH))
+                .willReturn(aResponse().withStatus(200).withFixedDelay(100)));
+        register(3);
+
+        CompletableFuture<Void> first = CompletableFuture.runAsync(dispatcher::drain);
+        CompletableFuture<Void> second = CompletableFuture.runAsync(dispatcher::drain);
+        CompletableFuture.allOf(first, second).get(10, TimeUnit.SECONDS);
+
+        // a send that timed out on a cold start is retried later, but none is sent by both
+        assertThat(notificationService.findAll(postRequestedFor(urlEqualTo(POST_REGISTER_PATH))))
+                .extracting(LoggedRequest::getBodyAsString)
+                .hasSize(3)
+                .doesNotHaveDuplicates();
+    }
+
+    private void register(int count) {
+        AuthService authService = instance.getBean(AuthService.class);
+        for (int i = 0; i < count; i++) {
+            authService.register(RegistrationRequest.builder()
+                    .emailAddr("circuit" + users.incrementAndGet() + "@test.com")
+                    .firstName("Mike")
+                    .lastName("Anderson")
+                    .password("password123").build());
+        }
+    }
+
+    private int sentRequests() {
+        return notificationService.findAll(postRequestedFor(urlEqualTo(POST_REGISTER_PATH))).size();
+    }
+}
@@ -0,0 +1,128 @@
+package io.coster.usermanagementsvc;
+
+import io.coster.usermanagementsvc.contract.AuthenticationResponse;
+import io.coster.usermanagementsvc.contract.LoginRequest;
+import io.coster.usermanagementsvc.contract.RegistrationRequest;
+import io.coster.usermanagementsvc.contract.ValidationRequest;
+import io.coster.usermanagementsvc.repositories.UserRepository;
+import io.coster.usermanagementsvc.services.cache.KnownUserFilter;
+import io.coster.usermanagementsvc.services.events.InvalidationBus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.tools.RunScript;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs an instance on two unrelated databases, the replica never receiving the writes of the primary, so that every
+ * read shows which of them it went to.
+ */
+public class ReplicaRoutingIntegrationTest {
+
+    private static final String REPLICA_URL = "jdbc:h2:mem:replica;MODE=PostgreSQL;DB_CLOSE_DELAY=-1";
+
+    private static ConfigurableApplicationContext instance;
+
+    private final TestRestTemplate restTemplate = new TestRestTemplate();
+
+    @BeforeClass
+    public static void startInstance() throws Exception {
+        try (Connection connection = DriverManager.getConnection(REPLICA_URL, "sa", "");
+             Reader schema = new InputStreamReader(
+                     ReplicaRoutingIntegrationTest.class.getResourceAsStream("/db/schema-postgres.sql"), StandardCharsets.UTF_8)) {
+            RunScript.execute(connection, schema);
+        }
+        instance = new SpringApplicationBuilder(UserManagementSvcApplication.class).run(
+                "--server.port=0",
+                "--spring.jmx.enabled=false",
+                "--spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.datasource.initialization-mode=never",
+                "--datasource.replica.url=" + REPLICA_URL,
+                "--datasource.replica.username=sa",
+                "--notification.outbox.dispatcher.enabled=false");
+    }
+
+    @AfterClass
+    public static void stopInstance() {
+        instance.close();
+    }
+
+    @Test
+    public void validate_ReadsFromReplica() {
+        insertToken(database("replicaDataSource"), "replica-only@test.com", "replica-token");
+        insertToken(database("primaryDataSource"), "primary-only@test.com", "primary-token");
+
+        assertThat(validate("replica-only@test.com", "replica-token")).isTrue();
+        assertThat(validate("primary-only@test.com", "primary-token")).isFalse();
+    }
+
+    @Test
+    public void loginRightAfterRegistration_ReadsOwnWritesFromPrimary() {
+        RegistrationRequest registration = RegistrationRequest.builder()
+                .emailAddr("routing@test.com")
+                .firstName("Mike")
+                .lastName("Anderson")
+                .password("password123").build();
+        AuthenticationResponse registered = restTemplate.postForObject(url("/auth/register"), registration,
+                AuthenticationResponse.class);
+        assertThat(validate("routing@test.com", registered.getAuthToken())).isTrue();
+
+        ResponseEntity<AuthenticationResponse> loggedIn = restTemplate.postForEntity(url("/auth/login"),
+                LoginRequest.builder().emailAddr("routing@test.com").password("password123").build(),
+                AuthenticationResponse.class);
+
+        assertThat(loggedIn.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(validate("routing@test.com", loggedIn.getBody().getAuthToken())).isTrue();
+        assertThat(database("replicaDataSource").queryForObject(
+                "SELECT count(*) FROM users WHERE email_addr = 'routing@test.com'", Integer.class)).isZero();
+    }
+
+    @Test
+    public void knownUserFilter_BuiltFromPrimary() {
+        database("primaryDataSource").update("INSERT INTO users (email_addr, first_name, last_name, password) "
+                + "VALUES ('filter-primary@test.com', 'Mike', 'Anderson', 'password')");
+        KnownUserFilter filter = new KnownUserFilter(instance.getBean(UserRepository.class), new SimpleMeterRegistry(),
+                instance.getBean(InvalidationBus.class), true, 5000, 1000, 0.01, 100);
+
+        filter.rebuild();
+
+        assertThat(filter.mightContain("filter-primary@test.com")).isTrue();
+    }
+
+    private static JdbcTemplate database(String name) {
+        return new JdbcTemplate(instance.getBean(name, DataSource.class));
+    }
+
+    private static void insertToken(JdbcTemplate database, String userId, String token) {
+        LocalDateTime now = LocalDateTime.now();
+        database.update("INSERT INTO auth_tokens (user_id, auth_token, issued, expiry) VALUES (?, ?, ?, ?)",
+                userId, token, now, now.plusHours(1));
+    }
+
+    private boolean validate(String userId, String token) {
+        AuthenticationResponse response = restTemplate.postForObject(url("/auth/validate"),
+                new ValidationRequest(userId, token), AuthenticationResponse.class);
+        return response.isValid();
+    }
+
+    private static String url(String path) {
+        return "http://localhost:" + instance.getEnvironment().getProperty("local.server.port") + path;
+    }
+}
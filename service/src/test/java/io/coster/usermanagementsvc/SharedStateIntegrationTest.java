@@ -0,0 +1,186 @@
+package io.coster.usermanagementsvc;
+
+import io.coster.usermanagementsvc.contract.BulkImportProgress;
+import io.coster.usermanagementsvc.contract.LoginRequest;
+import io.coster.usermanagementsvc.contract.PasswordResetRequest;
+import io.coster.usermanagementsvc.contract.RegistrationRequest;
+import io.coster.usermanagementsvc.domain.AuthToken;
+import io.coster.usermanagementsvc.domain.User;
+import io.coster.usermanagementsvc.metrics.StatementCounter;
+import io.coster.usermanagementsvc.repositories.TokenRepository;
+import io.coster.usermanagementsvc.services.AuthService;
+import io.coster.usermanagementsvc.services.cache.UserEntityCache;
+import io.coster.usermanagementsvc.services.events.JdbcInvalidationBus;
+import io.coster.usermanagementsvc.services.exceptions.InvalidCredentials;
+import io.coster.usermanagementsvc.services.imports.BulkImportService;
+import io.coster.usermanagementsvc.services.imports.ImportFormat;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs with the jdbc invalidation bus, the user cache and the known user filter, as recommended for multiple
+ * instances.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(locations = "classpath:application-integrationtest.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:sharedstate",
+        "notification.outbox.dispatcher.enabled=false",
+        "auth.invalidation.bus=jdbc",
+        "auth.user-cache.enabled=true",
+        "auth.user-filter.enabled=true"})
+public class SharedStateIntegrationTest {
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private TokenRepository tokenRepository;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    @Autowired
+    private UserEntityCache userCache;
+
+    @Autowired
+    private JdbcInvalidationBus invalidationBus;
+
+    @Autowired
+    private BulkImportService bulkImportService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void loginWithValidData_TokenReplacedWithOneStatementAndEvent() {
+        authService.register(RegistrationRequest.builder()
+                .emailAddr("statements@test.com")
+                .firstName("Mike")
+                .lastName("Anderson")
+                .password("$$lookatme").build());
+        LoginRequest request = LoginRequest.builder()
+                .emailAddr("statements@test.com")
+                .password("$$lookatme").build();
+
+        // update token and insert the bus event, the user is in the second-level cache since the registration
+        statementCounter.reset();
+        String token = authService.login(request);
+        assertThat(statementCounter.getCount()).isEqualTo(2);
+        assertThat(tokenRepository.findById("statements@test.com")).map(AuthToken::getAuthToken).contains(token);
+
+        // the token is inserted if the user has none
+        tokenRepository.deleteById("statements@test.com");
+        statementCounter.reset();
+        token = authService.login(request);
+        assertThat(statementCounter.getCount()).isEqualTo(3);
+        assertThat(tokenRepository.findById("statements@test.com")).map(AuthToken::getAuthToken).contains(token);
+    }
+
+    @Test
+    public void resetPasswordWithValidToken_TokenAndPasswordReplacedWithThreeStatementsAndEvents() {
+        String token = authService.register(RegistrationRequest.builder()
+                .emailAddr("reset@test.com")
+                .firstName("Mike")
+                .lastName("Anderson")
+                .password("$$lookatme").build());
+        PasswordResetRequest request = PasswordResetRequest.builder()
+                .userId("reset@test.com")
+                .token(token)
+                .password("newpassword").build();
+
+        // select token, update token, update password, insert the user changed and token replaced bus events
+        statementCounter.reset();
+        String newToken = authService.resetPassword(request);
+        assertThat(statementCounter.getCount()).isEqualTo(5);
+
+        assertThat(authService.validate("reset@test.com", newToken)).isTrue();
+        assertThat(authService.validate("reset@test.com", token)).isFalse();
+    }
+
+    @Test
+    public void importUsers_BatchesCountedAsStatements() throws IOException {
+        String body = "{\"emailAddr\":\"counted1@test.com\",\"firstName\":\"Ann\",\"lastName\":\"Smith\",\"password\":\"imported123\"}\n"
+                + "{\"emailAddr\":\"counted2@test.com\",\"firstName\":\"Bob\",\"lastName\":\"Jones\",\"password\":\"imported456\"}\n";
+
+        // select existing users, insert users, delete leftover tokens, insert tokens, outbox messages and bus events
+        statementCounter.reset();
+        BulkImportProgress result = bulkImportService.importUsers(new BufferedReader(new StringReader(body)),
+                ImportFormat.NDJSON, true, progress -> { });
+        assertThat(statementCounter.getCount()).isEqualTo(6);
+        assertThat(result.getImported()).isEqualTo(2);
+    }
+
+    @Test
+    public void lookUpUserTwice_SecondServedFromCache() {
+        authService.doesUserExist("testaccount@test.com");
+        long hitsBefore = userCache.getHitCount();
+        statementCounter.reset();
+
+        assertThat(authService.doesUserExist("testaccount@test.com")).isPresent();
+
+        assertThat(userCache.getHitCount()).isEqualTo(hitsBefore + 1);
+        assertThat(statementCounter.getCount()).isZero();
+        assertThat(meterRegistry.get("cache.gets").tag("cache", User.CACHE_REGION).tag("result", "hit")
+                .functionCounter().count()).isPositive();
+        assertThat(meterRegistry.get("auth.user.cache.hit.ratio").gauge().value()).isPositive();
+    }
+
+    @Test
+    public void resetPasswordOfCachedUser_OldPasswordRejected() {
+        String token = authService.register(RegistrationRequest.builder()
+                .emailAddr("cachedreset@test.com")
+                .firstName("Mike")
+                .lastName("Anderson")
+                .password("$$lookatme").build());
+        assertThat(authService.doesUserExist("cachedreset@test.com")).isPresent();
+
+        authService.resetPassword(PasswordResetRequest.builder()
+                .userId("cachedreset@test.com")
+                .token(token)
+                .password("newpassword").build());
+
+        assertThatThrownBy(() -> authService.login(LoginRequest.builder()
+                .emailAddr("cachedreset@test.com")
+                .password("$$lookatme").build()))
+                .isInstanceOf(InvalidCredentials.class)
+                .hasMessageContaining("Password provided is incorrect.");
+    }
+
+    @Test
+    public void validateUnknownUser_RejectedByFilter() {
+        // misses are only trusted once the bus has polled
+        invalidationBus.poll();
+        statementCounter.reset();
+
+        assertThat(authService.validate("testaccountFAKE@test.com", "abcd-efgh1000")).isFalse();
+
+        assertThat(statementCounter.getCount()).isZero();
+        assertThat(meterRegistry.get("auth.validations").tag("source", "user-filter").tag("outcome", "invalid")
+                .counter().count()).isPositive();
+    }
+
+    @Test
+    public void validateExpiredToken_RejectedForExpiry() {
+        double expiredBefore = meterRegistry.get("auth.validations")
+                .tag("source", "database").tag("outcome", "expired").counter().count();
+
+        assertThat(authService.validate("testaccount2@test.com", "xxxyyyzzz50")).isFalse();
+
+        // not by the known user filter
+        assertThat(meterRegistry.get("auth.validations").tag("source", "database").tag("outcome", "expired")
+                .counter().count()).isEqualTo(expiredBefore + 1);
+    }
+}
@@ -0,0 +1,55 @@
+package io.coster.usermanagementsvc;
+
+import io.coster.usermanagementsvc.contract.LoginRequest;
+import io.coster.usermanagementsvc.contract.RegistrationRequest;
+import io.coster.usermanagementsvc.services.AuthService;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Replaces signed tokens on one instance and validates them on another started afterwards, which has not received
+ * the replacements through the invalidation bus.
+ */
+public class SignedTokenIntegrationTest {
+
+    @Test
+    public void tokenReplacedBeforeStartup_Revoked() {
+        String registered;
+        String loggedIn;
+        try (ConfigurableApplicationContext before = start()) {
+            AuthService authService = before.getBean(AuthService.class);
+            registered = authService.register(RegistrationRequest.builder()
+                    .emailAddr("signed@test.com")
+                    .firstName("Mike")
+                    .lastName("Anderson")
+                    .password("$$lookatme").build());
+            loggedIn = authService.login(LoginRequest.builder()
+                    .emailAddr("signed@test.com")
+                    .password("$$lookatme").build());
+            assertThat(authService.validate("signed@test.com", registered)).isFalse();
+        }
+
+        try (ConfigurableApplicationContext after = start()) {
+            AuthService authService = after.getBean(AuthService.class);
+
+            assertThat(authService.validate("signed@test.com", registered)).isFalse();
+            assertThat(authService.validate("signed@test.com", loggedIn)).isTrue();
+        }
+    }
+
+    private static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(UserManagementSvcApplication.class).run(
+                "--server.port=0",
+                "--spring.jmx.enabled=false",
+                "--spring.datasource.url=jdbc:h2:mem:signed;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.datasource.initialization-mode=never",
+                "--notification.outbox.dispatcher.enabled=false",
+                "--auth.token.mode=signed",
+                "--auth.token.signing.keys=k1:c2VjcmV0LWtleS1udW1iZXItb25lLWZvci10ZXN0cw==",
+                "--auth.token.signing.active-key=k1");
+    }
+}
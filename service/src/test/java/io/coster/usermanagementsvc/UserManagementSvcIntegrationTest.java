@@ -1,26 +1,64 @@
 package io.coster.usermanagementsvc;
 
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.tomakehurst.wiremock.WireMockServer;
 import io.coster.usermanagementsvc.contract.AuthenticationResponse;
+import io.coster.usermanagementsvc.contract.BatchValidationRequest;
+import io.coster.usermanagementsvc.contract.BulkImportProgress;
 import io.coster.usermanagementsvc.contract.ErrorResponse;
 import io.coster.usermanagementsvc.contract.LoginRequest;
+import io.coster.usermanagementsvc.contract.PasswordResetRequest;
 import io.coster.usermanagementsvc.contract.RegistrationRequest;
+import io.coster.usermanagementsvc.contract.ValidationCodec;
 import io.coster.usermanagementsvc.contract.ValidationRequest;
+import io.coster.usermanagementsvc.domain.AuthToken;
+import io.coster.usermanagementsvc.metrics.StatementCounter;
+import io.coster.usermanagementsvc.repositories.OutboxRepository;
+import io.coster.usermanagementsvc.repositories.TokenRepository;
+import io.coster.usermanagementsvc.repositories.UserRepository;
+import io.coster.usermanagementsvc.services.AuthService;
+import io.coster.usermanagementsvc.services.ExpiredTokenReaper;
+import io.coster.usermanagementsvc.services.LastActiveBuffer;
+import io.coster.usermanagementsvc.services.cache.TokenValidationCache;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
 import static com.github.tomakehurst.wiremock.client.WireMock.configureFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
+import static com.github.tomakehurst.wiremock.client.WireMock.findAll;
 import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -38,6 +76,36 @@ public class UserManagementSvcIntegrationTest {
 	@Autowired
     private TestRestTemplate restTemplate;
 
+    @Autowired
+    private TokenValidationCache tokenCache;
+
+    @Autowired
+    private TokenRepository tokenRepository;
+
+    @Autowired
+    private ExpiredTokenReaper tokenReaper;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private LastActiveBuffer lastActiveBuffer;
+
+    @Autowired
+    private OutboxRepository outboxRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @BeforeClass
     public static void startWireMock()  {
         configureFor("localhost", 10001);
@@ -66,6 +134,25 @@ public class UserManagementSvcIntegrationTest {
         assertThat(body.getAuthToken()).isNotBlank();
     }
 
+    @Test
+    public void registerWithValidData_WelcomeMessageDispatchedFromOutbox() throws InterruptedException {
+        RegistrationRequest request = RegistrationRequest.builder()
+                .emailAddr("welcome@test.com")
+                .firstName("Mike")
+                .lastName("Anderson")
+                .password("test123").build();
+
+        restTemplate.postForEntity(String.format("http://localhost:%d/auth/register", port), request, AuthenticationResponse.class);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (findAll(postRequestedFor(urlEqualTo("/notification/postregister"))
+                .withRequestBody(containing("welcome@test.com"))).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(findAll(postRequestedFor(urlEqualTo("/notification/postregister"))
+                .withRequestBody(containing("welcome@test.com")))).hasSize(1);
+    }
+
     @Test
     public void registerWithEmailThatAlreadyExists_ReceiveBadRequest() {
         RegistrationRequest request = RegistrationRequest.builder()
@@ -135,6 +222,112 @@ public class UserManagementSvcIntegrationTest {
         assertThat(body.getAuthToken()).isNotBlank();
     }
 
+    @Test
+    public void loginWithValidData_TokenReplacedWithTwoStatements() {
+        authService.register(RegistrationRequest.builder()
+                .emailAddr("statements@test.com")
+                .firstName("Mike")
+                .lastName("Anderson")
+                .password("$$lookatme").build());
+        LoginRequest request = LoginRequest.builder()
+                .emailAddr("statements@test.com")
+                .password("$$lookatme").build();
+
+        // select user, update token
+        statementCounter.reset();
+        String token = authService.login(request);
+        assertThat(statementCounter.getCount()).isEqualTo(2);
+        assertThat(tokenRepository.findById("statements@test.com")).map(AuthToken::getAuthToken).contains(token);
+
+        // the token is inserted if the user has none
+        tokenRepository.deleteById("statements@test.com");
+        statementCounter.reset();
+        token = authService.login(request);
+        assertThat(statementCounter.getCount()).isEqualTo(3);
+        assertThat(tokenRepository.findById("statements@test.com")).map(AuthToken::getAuthToken).contains(token);
+    }
+
+    @Test
+    public void loginWhileConcurrentLoginInsertsFirstToken_TokenReplaced() throws Exception {
+        authService.register(RegistrationRequest.builder()
+                .emailAddr("concurrent-login@test.com")
+                .firstName("Mike")
+                .lastName("Anderson")
+                .password("$$lookatme").build());
+        // as after the reaper deleted an expired token
+        tokenRepository.deleteById("concurrent-login@test.com");
+        LoginRequest request = LoginRequest.builder()
+                .emailAddr("concurrent-login@test.com")
+                .password("$$lookatme").build();
+
+        String token;
+        ExecutorService client = Executors.newSingleThreadExecutor();
+        try (Connection concurrentLogin = jdbcTemplate.getDataSource().getConnection()) {
+            concurrentLogin.setAutoCommit(false);
+            try (Statement statement = concurrentLogin.createStatement()) {
+                statement.executeUpdate("INSERT INTO auth_tokens (user_id, auth_token, issued, expiry) "
+                        + "VALUES ('concurrent-login@test.com', 'concurrent-token', now(), dateadd('HOUR', 1, now()))");
+            }
+            // the login does not see the uncommitted row, so it inserts as well and conflicts once it is committed
+            Future<String> login = client.submit(() -> authService.login(request));
+            Thread.sleep(500);
+            concurrentLogin.commit();
+            token = login.get(10, TimeUnit.SECONDS);
+        } finally {
+            client.shutdown();
+        }
+
+        assertThat(tokenRepository.findById("concurrent-login@test.com")).map(AuthToken::getAuthToken).contains(token);
+    }
+
+    @Test
+    public void loginWithValidData_LastActiveWrittenOnFlush() {
+        authService.register(RegistrationRequest.builder()
+                .emailAddr("lastactive@test.com")
+                .firstName("Mike")
+                .lastName("Anderson")
+                .password("$$lookatme").build());
+        LocalDateTime registered = userRepository.findById("lastactive@test.com").get().getLastActive();
+
+        authService.login(LoginRequest.builder()
+                .emailAddr("lastactive@test.com")
+                .password("$$lookatme").build());
+        assertThat(userRepository.findById("lastactive@test.com").get().getLastActive()).isEqualTo(registered);
+
+        // one batch for the users recorded since the last flush
+        statementCounter.reset();
+        lastActiveBuffer.flush();
+        assertThat(statementCounter.getCount()).isEqualTo(1);
+        assertThat(userRepository.findById("lastactive@test.com").get().getLastActive()).isAfter(registered);
+    }
+
+    @Test
+    public void resetPasswordWithValidToken_TokenAndPasswordReplacedWithThreeStatements() {
+        String token = authService.register(RegistrationRequest.builder()
+                .emailAddr("reset@test.com")
+                .firstName("Mike")
+                .lastName("Anderson")
+                .password("$$lookatme").build());
+        PasswordResetRequest request = PasswordResetRequest.builder()
+                .userId("reset@test.com")
+                .token(token)
+                .password("newpassword").build();
+
+        // select token, update token, update password
+        statementCounter.reset();
+        String newToken = authService.resetPassword(request);
+        assertThat(statementCounter.getCount()).isEqualTo(3);
+
+        assertThat(authService.validate("reset@test.com", newToken)).isTrue();
+        assertThat(authService.validate("reset@test.com", token)).isFalse();
+        LoginRequest loginReq = LoginRequest.builder()
+                .emailAddr("reset@test.com")
+                .password("newpassword").build();
+        ResponseEntity<AuthenticationResponse> response
+                = restTemplate.postForEntity(String.format("http://localhost:%d/auth/login", port), loginReq, AuthenticationResponse.class);
+        assertThat(response.getStatusCode()).isEqualByComparingTo(HttpStatus.OK);
+    }
+
     @Test
     public void loginWithNonRegisteredEmail_ReceiveBadRequest() {
         LoginRequest request = LoginRequest.builder()
@@ -147,6 +340,22 @@ public class UserManagementSvcIntegrationTest {
         assertBadRequestWithErrorMessageContaining(response, "Email address is not registered.");
     }
 
+    @Test
+    public void loginRepeatedlyForSameUser_ReceiveTooManyRequests() {
+        LoginRequest request = LoginRequest.builder()
+                .emailAddr("bruteforce@test.com")
+                .password("secretive123").build();
+
+        ResponseEntity<ErrorResponse> response = null;
+        for (int i = 0; i < 6; i++) {
+            response = restTemplate.postForEntity(String.format("http://localhost:%d/auth/login", port), request, ErrorResponse.class);
+        }
+
+        assertThat(response.getStatusCode()).isEqualByComparingTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isNotBlank();
+        assertThat(response.getBody().getErrorMsg()).contains("Too many attempts");
+    }
+
     @Test
     public void loginWithRegisteredEmailButPasswordDoesNotMatch_ReceiveBadRequest() {
         LoginRequest request = LoginRequest.builder()
@@ -183,6 +392,43 @@ public class UserManagementSvcIntegrationTest {
         assertThat(body.getAuthToken()).isEqualTo("abcd-efgh1000");
     }
 
+    @Test
+    public void validateValidCredentialsTwice_SecondServedFromCache() {
+        ValidationRequest request = new ValidationRequest("testaccount@test.com", "abcd-efgh1000");
+        restTemplate.postForEntity(String.format("http://localhost:%d/auth/validate", port), request, AuthenticationResponse.class);
+        long hitsBefore = tokenCache.getHitCount();
+
+        ResponseEntity<AuthenticationResponse> response
+                = restTemplate.postForEntity(String.format("http://localhost:%d/auth/validate", port), request, AuthenticationResponse.class);
+
+        assertThat(response.getStatusCode()).isEqualByComparingTo(HttpStatus.OK);
+        assertThat(response.getBody()).isNotNull();
+        assertThat(response.getBody().isValid()).isTrue();
+        assertThat(tokenCache.getHitCount()).isEqualTo(hitsBefore + 1);
+    }
+
+    @Test
+    public void validateValidCredentials_AccessLogLineWritten() throws InterruptedException {
+        Logger accessLogger = (Logger) LoggerFactory.getLogger("io.coster.usermanagementsvc.access");
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        accessLogger.addAppender(appender);
+        try {
+            ValidationRequest request = new ValidationRequest("testaccount@test.com", "abcd-efgh1000");
+            restTemplate.postForEntity(String.format("http://localhost:%d/auth/validate", port), request, AuthenticationResponse.class);
+
+            // written once the response has been sent
+            for (int i = 0; i < 50 && appender.list.isEmpty(); i++) {
+                Thread.sleep(20);
+            }
+            assertThat(appender.list).hasSize(1);
+            assertThat(appender.list.get(0).getFormattedMessage())
+                    .matches("method=POST uri=/auth/validate status=200 outcome=valid latency_ms=\\d+\\.\\d{3} statements=\\d+");
+        } finally {
+            accessLogger.detachAppender(appender);
+        }
+    }
+
     @Test
     public void validateExpiredToken_ReceiveFalseForValidity() {
         ValidationRequest request = new ValidationRequest("testaccount2@test.com", "xxxyyyzzz50");
@@ -222,6 +468,215 @@ public class UserManagementSvcIntegrationTest {
         assertThat(body.isValid()).isFalse();
     }
 
+    @Test
+    public void validateBatch_ReceiveValidityOfEachInOrder() {
+        BatchValidationRequest request = new BatchValidationRequest(Arrays.asList(
+                new ValidationRequest("testaccount@test.com", "abcd-efgh1000"),
+                new ValidationRequest("testaccount2@test.com", "xxxyyyzzz50"),
+                new ValidationRequest("testaccount@test.com", "abfgggf"),
+                new ValidationRequest("testaccountFAKE@test.com", "abcd-efgh1000")));
 
-}
+        ResponseEntity<AuthenticationResponse[]> response
+                = restTemplate.postForEntity(String.format("http://localhost:%d/auth/validate/batch", port), request, AuthenticationResponse[].class);
+
+        assertThat(response.getStatusCode()).isEqualByComparingTo(HttpStatus.OK);
+        AuthenticationResponse[] body = response.getBody();
+        assertThat(body).isNotNull();
+        assertThat(body).extracting(AuthenticationResponse::isValid)
+                .containsExactly(true, false, false, false);
+        assertThat(body).extracting(AuthenticationResponse::getUserId)
+                .containsExactly("testaccount@test.com", "testaccount2@test.com", "testaccount@test.com", "testaccountFAKE@test.com");
+    }
+
+    @Test
+    public void validateWithoutUserId_ReceiveFalseForValidity() {
+        ResponseEntity<AuthenticationResponse> response = restTemplate.postForEntity(
+                String.format("http://localhost:%d/auth/validate", port),
+                new ValidationRequest(null, "abcd-efgh1000"), AuthenticationResponse.class);
+        ResponseEntity<AuthenticationResponse[]> batchResponse = restTemplate.postForEntity(
+                String.format("http://localhost:%d/auth/validate/batch", port),
+                new BatchValidationRequest(Arrays.asList(
+                        new ValidationRequest(null, "abcd-efgh1000"),
+                        new ValidationRequest("testaccount@test.com", "abcd-efgh1000"))),
+                AuthenticationResponse[].class);
+
+        assertThat(response.getStatusCode()).isEqualByComparingTo(HttpStatus.OK);
+        assertThat(response.getBody().isValid()).isFalse();
+        assertThat(batchResponse.getStatusCode()).isEqualByComparingTo(HttpStatus.OK);
+        assertThat(batchResponse.getBody()).extracting(AuthenticationResponse::isValid)
+                .containsExactly(false, true);
+    }
+
+    @Test
+    public void validateEmptyBatch_ReceiveBadRequest() {
+        BatchValidationRequest request = new BatchValidationRequest(Collections.emptyList());
+
+        ResponseEntity<ErrorResponse> response
+                = restTemplate.postForEntity(String.format("http://localhost:%d/auth/validate/batch", port), request, ErrorResponse.class);
 
+        assertBadRequestWithErrorMessageContaining(response, "requests");
+    }
+
+    @Test
+    public void validateBinary_ReceiveValidityByte() {
+        byte[] request = ValidationCodec.encodeRequest("testaccount@test.com", "abcd-efgh1000");
+
+        ResponseEntity<byte[]> response = postBinary("/auth/validate", request, byte[].class);
+
+        assertThat(response.getStatusCode()).isEqualByComparingTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.parseMediaType(ValidationCodec.MEDIA_TYPE));
+        assertThat(ValidationCodec.decodeResponse(response.getBody())).isTrue();
+    }
+
+    @Test
+    public void validateBinaryBatch_ReceiveValidityOfEachInOrder() {
+        byte[] request = ValidationCodec.encodeBatchRequest(Arrays.asList(
+                new ValidationRequest("testaccount@test.com", "abcd-efgh1000"),
+                new ValidationRequest("testaccount@test.com", "abfgggf"),
+                new ValidationRequest("testaccountFAKE@test.com", "abcd-efgh1000")));
+
+        ResponseEntity<byte[]> response = postBinary("/auth/validate/batch", request, byte[].class);
+
+        assertThat(response.getStatusCode()).isEqualByComparingTo(HttpStatus.OK);
+        assertThat(ValidationCodec.decodeBatchResponse(response.getBody())).containsExactly(true, false, false);
+    }
+
+    @Test
+    public void validateBinaryTruncated_ReceiveBadRequest() {
+        byte[] request = ValidationCodec.encodeRequest("testaccount@test.com", "abcd-efgh1000");
+
+        ResponseEntity<ErrorResponse> response = postBinary("/auth/validate",
+                Arrays.copyOf(request, request.length - 1), ErrorResponse.class);
+
+        assertBadRequestWithErrorMessageContaining(response, "truncated");
+    }
+
+    private <T> ResponseEntity<T> postBinary(String path, byte[] body, Class<T> responseType) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(ValidationCodec.MEDIA_TYPE));
+        headers.setAccept(Collections.singletonList(MediaType.parseMediaType(ValidationCodec.MEDIA_TYPE)));
+        return restTemplate.postForEntity(String.format("http://localhost:%d%s", port, path),
+                new HttpEntity<>(body, headers), responseType);
+    }
+
+    @Test
+    public void reapExpiredTokens_OnlyExpiredTokensDeleted() {
+        tokenReaper.reap();
+
+        assertThat(tokenRepository.findById("testaccount2@test.com")).isEmpty();
+        assertThat(tokenRepository.findById("testaccount@test.com")).isPresent();
+    }
+
+    @Test
+    public void reapExpiredTokens_TokenRefreshedWhileReaping_Kept() throws Exception {
+        jdbcTemplate.update("INSERT INTO auth_tokens (user_id, auth_token, issued, expiry) "
+                + "VALUES ('reaper-refresh@test.com', 'expired-token', dateadd('HOUR', -2, now()), dateadd('HOUR', -1, now()))");
+
+        ExecutorService reaper = Executors.newSingleThreadExecutor();
+        try (Connection concurrentLogin = jdbcTemplate.getDataSource().getConnection()) {
+            concurrentLogin.setAutoCommit(false);
+            try (Statement statement = concurrentLogin.createStatement()) {
+                statement.executeUpdate("UPDATE auth_tokens SET auth_token = 'fresh-token', issued = now(), "
+                        + "expiry = dateadd('HOUR', 1, now()) WHERE user_id = 'reaper-refresh@test.com'");
+            }
+            // the reaper still reads the expired row, and waits for the login's lock to delete it
+            Future<Integer> deleted = reaper.submit(() -> tokenRepository.deleteExpired(LocalDateTime.now(), 1000));
+            Thread.sleep(500);
+            concurrentLogin.commit();
+            deleted.get(10, TimeUnit.SECONDS);
+        } finally {
+            reaper.shutdown();
+        }
+
+        assertThat(tokenRepository.findById("reaper-refresh@test.com")).map(AuthToken::getAuthToken).contains("fresh-token");
+    }
+
+    @Test
+    public void importNdjson_NewUsersImportedExistingSkippedInvalidReported() throws IOException {
+        String body = "{\"emailAddr\":\"imported1@test.com\",\"firstName\":\"Ann\",\"lastName\":\"Smith\",\"password\":\"imported123\"}\n"
+                + "{\"emailAddr\":\"testaccount@test.com\",\"firstName\":\"Ann\",\"lastName\":\"Smith\",\"password\":\"imported123\"}\n"
+                + "{\"emailAddr\":\"not-an-email\",\"firstName\":\"Ann\",\"lastName\":\"Smith\",\"password\":\"imported123\"}\n"
+                + "\n"
+                + "{\"emailAddr\":\"imported2@test.com\",\"firstName\":\"Bob\",\"lastName\":\"Jones\",\"password\":\"imported456\"}\n"
+                + "{\"emailAddr\":\"imported1@test.com\",\"firstName\":\"Ann\",\"lastName\":\"Smith\",\"password\":\"imported123\"}\n"
+                + "{broken\n";
+
+        List<BulkImportProgress> progress = importUsers(body, "application/x-ndjson", "test-admin-key");
+
+        // one line per batch of two valid records, and the final one
+        assertThat(progress).hasSize(3);
+        BulkImportProgress result = progress.get(progress.size() - 1);
+        assertThat(result.isDone()).isTrue();
+        assertThat(result.getProcessed()).isEqualTo(6);
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getSkipped()).isEqualTo(2);
+        assertThat(result.getFailed()).isEqualTo(2);
+        assertThat(result.getErrors()).hasSize(2);
+        assertThat(result.getErrors().get(0)).startsWith("line 3: emailAddr:");
+        assertThat(result.getErrors().get(1)).startsWith("line 7: malformed JSON");
+        assertThat(userRepository.findById("testaccount@test.com").get().getFirstName()).isEqualTo("Richard");
+
+        ResponseEntity<AuthenticationResponse> login = restTemplate.postForEntity(String.format("http://localhost:%d/auth/login", port),
+                LoginRequest.builder().emailAddr("imported2@test.com").password("imported456").build(), AuthenticationResponse.class);
+        assertThat(login.getStatusCode()).isEqualByComparingTo(HttpStatus.OK);
+    }
+
+    @Test
+    public void importCsv_UsersImportedWithoutWelcomeMessages() throws IOException {
+        String body = "password,emailAddr,firstName,lastName\n"
+                + "csv-pass1,csv1@test.com,Carl,\"O'Neil, Jr.\"\n"
+                + "csv-pass2,csv2@test.com,Dora,Lee\n";
+        long outboxBefore = outboxRepository.count();
+
+        List<BulkImportProgress> progress = importUsers(body, "text/csv", "test-admin-key");
+
+        BulkImportProgress result = progress.get(progress.size() - 1);
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getFailed()).isEqualTo(0);
+        assertThat(userRepository.findById("csv1@test.com").get().getLastName()).isEqualTo("O'Neil, Jr.");
+        assertThat(tokenRepository.findById("csv2@test.com")).isPresent();
+        assertThat(outboxRepository.count()).isEqualTo(outboxBefore);
+    }
+
+    @Test
+    public void importWithoutAdminKey_ReceiveForbidden() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("text/csv"));
+        ResponseEntity<ErrorResponse> response = restTemplate.postForEntity(String.format("http://localhost:%d/admin/users/import", port),
+                new HttpEntity<>("emailAddr,firstName,lastName,password\n", headers), ErrorResponse.class);
+
+        assertThat(response.getStatusCode()).isEqualByComparingTo(HttpStatus.FORBIDDEN);
+    }
+
+    private List<BulkImportProgress> importUsers(String body, String contentType, String adminKey) throws IOException {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(contentType));
+        headers.set("X-Admin-Key", adminKey);
+        String url = String.format("http://localhost:%d/admin/users/import?welcome=%b", port, contentType.equals("application/x-ndjson"));
+        ResponseEntity<String> response = restTemplate.postForEntity(url, new HttpEntity<>(body, headers), String.class);
+        assertThat(response.getStatusCode()).isEqualByComparingTo(HttpStatus.OK);
+
+        List<BulkImportProgress> progress = new ArrayList<>();
+        for (String line : response.getBody().split("\n")) {
+            progress.add(objectMapper.readValue(line, BulkImportProgress.class));
+        }
+        return progress;
+    }
+
+    @Test
+    public void scrapePrometheusEndpoint_ReceiveRequestServiceAndRepositoryMetrics() {
+        ValidationRequest request = new ValidationRequest("testaccountFAKE@test.com", "abcd-efgh1000");
+        restTemplate.postForEntity(String.format("http://localhost:%d/auth/validate", port), request, AuthenticationResponse.class);
+
+        ResponseEntity<String> response
+                = restTemplate.getForEntity(String.format("http://localhost:%d/actuator/prometheus", port), String.class);
+
+        assertThat(response.getStatusCode()).isEqualByComparingTo(HttpStatus.OK);
+        assertThat(response.getBody())
+                .contains("http_server_requests_seconds_bucket{")
+                .contains("http_server_requests_statements_count{")
+                .contains("auth_validations_total{outcome=\"invalid\",source=\"database\",}")
+                .contains("repository_invocations_seconds_count{");
+    }
+
+}
@@ -0,0 +1,155 @@
+package io.coster.usermanagementsvc;
+
+import io.coster.usermanagementsvc.contract.LoginRequest;
+import io.coster.usermanagementsvc.contract.RegistrationRequest;
+import io.coster.usermanagementsvc.domain.AuthToken;
+import io.coster.usermanagementsvc.repositories.TokenRepository;
+import io.coster.usermanagementsvc.services.AuthService;
+import io.coster.usermanagementsvc.services.tokens.JpaTokenStore;
+import io.coster.usermanagementsvc.services.tokens.TokenStore;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Holds a token lookup between reading the token table and caching what it read, so that a login can replace the
+ * token in between.
+ */
+public class ValidationCacheIntegrationTest {
+
+    private static ConfigurableApplicationContext instance;
+
+    @BeforeClass
+    public static void startInstance() {
+        instance = new SpringApplicationBuilder(UserManagementSvcApplication.class, PausingTokenStoreConfig.class).run(
+                "--server.port=0",
+                "--spring.jmx.enabled=false",
+                "--spring.datasource.url=jdbc:h2:mem:validationcache;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.datasource.initialization-mode=never",
+                "--notification.outbox.dispatcher.enabled=false",
+                "--auth.degraded.lookup-timeout-ms=10000");
+    }
+
+    @AfterClass
+    public static void stopInstance() {
+        instance.close();
+    }
+
+    @Test
+    public void loginWhileValidationReadsPreviousToken_PreviousTokenNotCached() throws Exception {
+        AuthService authService = instance.getBean(AuthService.class);
+        PausingTokenStore tokenStore = instance.getBean(PausingTokenStore.class);
+        String previousToken = authService.register(RegistrationRequest.builder()
+                .emailAddr("cache-race@test.com")
+                .firstName("Mike")
+                .lastName("Anderson")
+                .password("$$lookatme").build());
+
+        ExecutorService client = Executors.newSingleThreadExecutor();
+        String newToken;
+        try {
+            tokenStore.pauseNextFind();
+            Future<Boolean> validation = client.submit(() -> authService.validate("cache-race@test.com", previousToken));
+            assertThat(tokenStore.read.await(10, TimeUnit.SECONDS)).isTrue();
+
+            newToken = authService.login(LoginRequest.builder()
+                    .emailAddr("cache-race@test.com")
+                    .password("$$lookatme").build());
+            tokenStore.resume.countDown();
+
+            // valid when it was read
+            assertThat(validation.get(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            tokenStore.resume.countDown();
+            client.shutdown();
+        }
+
+        assertThat(authService.validate("cache-race@test.com", previousToken)).isFalse();
+        assertThat(authService.validate("cache-race@test.com", newToken)).isTrue();
+    }
+
+    public static class PausingTokenStoreConfig {
+
+        @Bean
+        @Primary
+        public PausingTokenStore pausingTokenStore(TokenRepository tokenRepository) {
+            return new PausingTokenStore(new JpaTokenStore(tokenRepository));
+        }
+    }
+
+    /**
+     * Waits after the next {@link #find} has read the token until {@link #resume} is counted down.
+     */
+    public static class PausingTokenStore implements TokenStore {
+
+        private final TokenStore delegate;
+        private volatile boolean pause;
+        private final CountDownLatch read = new CountDownLatch(1);
+        private final CountDownLatch resume = new CountDownLatch(1);
+
+        PausingTokenStore(TokenStore delegate) {
+            this.delegate = delegate;
+        }
+
+        void pauseNextFind() {
+            pause = true;
+        }
+
+        @Override
+        public Optional<AuthToken> find(String userId) {
+            Optional<AuthToken> found = delegate.find(userId);
+            if (pause) {
+                pause = false;
+                read.countDown();
+                try {
+                    resume.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public Map<String, AuthToken> findAll(Collection<String> userIds) {
+            return delegate.findAll(userIds);
+        }
+
+        @Override
+        public void insert(AuthToken token) {
+            delegate.insert(token);
+        }
+
+        @Override
+        public void put(AuthToken token) {
+            delegate.put(token);
+        }
+
+        @Override
+        public boolean replace(String previousToken, AuthToken token) {
+            return delegate.replace(previousToken, token);
+        }
+
+        @Override
+        public int deleteExpired(LocalDateTime now, int limit) {
+            return delegate.deleteExpired(now, limit);
+        }
+    }
+}
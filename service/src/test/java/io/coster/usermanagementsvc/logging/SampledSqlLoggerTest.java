@@ -0,0 +1,52 @@
+package io.coster.usermanagementsvc.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SampledSqlLoggerTest {
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger("io.coster.usermanagementsvc.sql");
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    @Before
+    public void attachAppender() {
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @After
+    public void detachAppender() {
+        logger.detachAppender(appender);
+        logger.setLevel(null);
+    }
+
+    @Test
+    public void inspectAtInfo_NothingLogged() {
+        logger.setLevel(Level.INFO);
+        SampledSqlLogger sqlLogger = new SampledSqlLogger(5);
+
+        assertThat(sqlLogger.inspect("select 1")).isEqualTo("select 1");
+        assertThat(appender.list).isEmpty();
+    }
+
+    @Test
+    public void inspectAtDebug_LoggedUpToRate() {
+        logger.setLevel(Level.DEBUG);
+        SampledSqlLogger sqlLogger = new SampledSqlLogger(5);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(sqlLogger.inspect("select " + i)).isEqualTo("select " + i);
+        }
+
+        assertThat(appender.list.size()).isBetween(5, 6);
+        assertThat(appender.list.get(0).getFormattedMessage()).isEqualTo("sql=select 0");
+    }
+}
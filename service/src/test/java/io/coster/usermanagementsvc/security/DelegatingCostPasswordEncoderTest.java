@@ -0,0 +1,79 @@
+package io.coster.usermanagementsvc.security;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DelegatingCostPasswordEncoderTest {
+
+    private final BCryptCostEncoder bcrypt = new BCryptCostEncoder(4);
+    private final Pbkdf2CostEncoder pbkdf2 = new Pbkdf2CostEncoder(1000);
+    private final Argon2CostEncoder argon2 = new Argon2CostEncoder(1, 1024, 1);
+    private final List<CostAwarePasswordEncoder> encoders = Arrays.asList(bcrypt, pbkdf2, argon2);
+
+    @Test
+    public void eachAlgorithm_MatchesOwnHashesOnly() {
+        for (CostAwarePasswordEncoder encoder : encoders) {
+            String encoded = encoder.encode("s3cret!");
+
+            assertThat(encoder.matches("s3cret!", encoded)).isTrue();
+            assertThat(encoder.matches("wrong", encoded)).isFalse();
+            assertThat(encoder.upgradeEncoding(encoded)).isFalse();
+            assertThat(encoders).filteredOn(other -> other.supports(encoded)).containsExactly(encoder);
+        }
+    }
+
+    @Test
+    public void hashOfOtherAlgorithm_MatchesAndNeedsUpgrade() {
+        DelegatingCostPasswordEncoder encoder = new DelegatingCostPasswordEncoder(argon2, encoders);
+        String legacy = bcrypt.encode("s3cret!");
+
+        assertThat(encoder.matches("s3cret!", legacy)).isTrue();
+        assertThat(encoder.upgradeEncoding(legacy)).isTrue();
+        assertThat(encoder.upgradeEncoding(encoder.encode("s3cret!"))).isFalse();
+    }
+
+    @Test
+    public void hashWithOutdatedCost_NeedsUpgrade() {
+        assertThat(bcrypt.withCost(5).upgradeEncoding(bcrypt.encode("s3cret!"))).isTrue();
+        assertThat(pbkdf2.withCost(2000).upgradeEncoding(pbkdf2.encode("s3cret!"))).isTrue();
+        assertThat(argon2.withCost(2).upgradeEncoding(argon2.encode("s3cret!"))).isTrue();
+    }
+
+    @Test
+    public void hashWithHigherCost_NoUpgrade() {
+        assertThat(bcrypt.upgradeEncoding(bcrypt.withCost(5).encode("s3cret!"))).isFalse();
+        assertThat(pbkdf2.upgradeEncoding(pbkdf2.withCost(2000).encode("s3cret!"))).isFalse();
+        assertThat(argon2.upgradeEncoding(argon2.withCost(2).encode("s3cret!"))).isFalse();
+    }
+
+    @Test
+    public void instancesCalibratedToDifferentCosts_OnlyUpgradeBelowMinimum() {
+        CostAwarePasswordEncoder minimum = bcrypt.withCost(5);
+        DelegatingCostPasswordEncoder first = new DelegatingCostPasswordEncoder(bcrypt.withCost(6), minimum, encoders);
+        DelegatingCostPasswordEncoder second = new DelegatingCostPasswordEncoder(bcrypt.withCost(7), minimum, encoders);
+
+        assertThat(second.upgradeEncoding(first.encode("s3cret!"))).isFalse();
+        assertThat(first.upgradeEncoding(second.encode("s3cret!"))).isFalse();
+        assertThat(first.upgradeEncoding(bcrypt.encode("s3cret!"))).isTrue();
+    }
+
+    @Test
+    public void unknownHashFormat_DoesNotMatch() {
+        DelegatingCostPasswordEncoder encoder = new DelegatingCostPasswordEncoder(bcrypt, encoders);
+
+        assertThat(encoder.matches("secretive123", "secretive123")).isFalse();
+        assertThat(encoder.upgradeEncoding("secretive123")).isTrue();
+    }
+
+    @Test
+    public void calibration_StopsAtMaxCost() {
+        CostAwarePasswordEncoder calibrated = PasswordCostCalibrator.calibrate(bcrypt, Duration.ofMinutes(1), 5);
+
+        assertThat(calibrated.getCost()).isEqualTo(5);
+    }
+}
@@ -0,0 +1,73 @@
+package io.coster.usermanagementsvc.security;
+
+import io.coster.usermanagementsvc.services.exceptions.HashingCapacityExceeded;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class OffloadingPasswordEncoderTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final OffloadingPasswordEncoder encoder = new OffloadingPasswordEncoder(new BlockingEncoder(), 1, 1, meterRegistry);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        encoder.shutdown();
+    }
+
+    @Test
+    public void encode_RunsOnHashingPoolAndRecordsTimes() {
+        release.countDown();
+
+        assertThat(encoder.encode("secret")).isEqualTo("encoded:secret");
+        assertThat(encoder.matches("secret", "encoded:secret")).isTrue();
+        assertThat(meterRegistry.get("auth.password.hashing.time").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("auth.password.hashing.queue.wait").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void encodeWhenPoolAndQueueAreFull_FailsFast() throws InterruptedException {
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("first"));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("second"));
+        while (meterRegistry.get("executor.queued").gauge().value() < 1) {
+            Thread.sleep(10);
+        }
+
+        assertThatThrownBy(() -> encoder.encode("third")).isInstanceOf(HashingCapacityExceeded.class);
+
+        release.countDown();
+        assertThat(running.join()).isEqualTo("encoded:first");
+        assertThat(queued.join()).isEqualTo("encoded:second");
+    }
+
+    private class BlockingEncoder implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "encoded:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encodedPassword.equals(encode(rawPassword));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package io.coster.usermanagementsvc.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.Driver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LastActiveBufferTest {
+
+    private static final LocalDateTime REGISTERED = LocalDateTime.of(2019, 1, 1, 0, 0);
+
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(
+            new SimpleDriverDataSource(new Driver(), "jdbc:h2:mem:lastactive;DB_CLOSE_DELAY=-1", "sa", ""));
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler() {
+        @Override
+        public ScheduledFuture<?> schedule(Runnable task, Date startTime) {
+            scheduled.add(task);
+            return null;
+        }
+    };
+    private final LastActiveBuffer buffer = new LastActiveBuffer(jdbcTemplate, taskScheduler, new SimpleMeterRegistry(), true, 2);
+
+    @Before
+    public void setUp() {
+        jdbcTemplate.execute("CREATE TABLE users (email_addr varchar(255) PRIMARY KEY, last_active timestamp)");
+        jdbcTemplate.update("INSERT INTO users VALUES ('first@test.com', ?), ('second@test.com', ?)", REGISTERED, REGISTERED);
+    }
+
+    @After
+    public void tearDown() {
+        jdbcTemplate.execute("DROP TABLE users");
+    }
+
+    @Test
+    public void bufferFull_FlushHandedToScheduler() {
+        // H2 keeps microseconds, now() may have nanoseconds
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        buffer.record("first@test.com", now);
+        buffer.record("second@test.com", now);
+        buffer.record("second@test.com", now.plusSeconds(1));
+
+        // nothing written by the recording thread, and a single flush scheduled
+        assertThat(lastActive("first@test.com")).isEqualTo(REGISTERED);
+        assertThat(scheduled).hasSize(1);
+
+        scheduled.get(0).run();
+        assertThat(lastActive("first@test.com")).isEqualTo(now);
+        assertThat(lastActive("second@test.com")).isEqualTo(now.plusSeconds(1));
+
+        buffer.record("first@test.com", now.plusSeconds(2));
+        buffer.record("second@test.com", now.plusSeconds(2));
+        assertThat(scheduled).hasSize(2);
+    }
+
+    private LocalDateTime lastActive(String emailAddr) {
+        return jdbcTemplate.queryForObject("SELECT last_active FROM users WHERE email_addr = ?",
+                LocalDateTime.class, emailAddr);
+    }
+}
@@ -0,0 +1,76 @@
+package io.coster.usermanagementsvc.services.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SingleFlightTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>("test.lookups", meterRegistry);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void concurrentLoadsOfSameKey_LoaderRunsOnce() throws Exception {
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> singleFlight.load("key", this::blockingLoad));
+        CompletableFuture<String> second = waitForLoadThenCoalesce("key");
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("value1");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("value1");
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("test.lookups.coalesced").counter().count()).isEqualTo(1);
+
+        // nothing is kept once the load finished
+        assertThat(singleFlight.load("key", () -> "value2")).isEqualTo("value2");
+    }
+
+    @Test
+    public void failedLoad_ExceptionSharedWithWaiters() throws Exception {
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> singleFlight.load("key", () -> {
+            blockingLoad();
+            throw new IllegalStateException("database down");
+        }));
+        CompletableFuture<String> second = waitForLoadThenCoalesce("key");
+        release.countDown();
+
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void loadsOfDifferentKeys_NotCoalesced() {
+        assertThat(singleFlight.load("key1", () -> "value1")).isEqualTo("value1");
+        assertThat(singleFlight.load("key2", () -> "value2")).isEqualTo("value2");
+        assertThat(meterRegistry.get("test.lookups.coalesced").counter().count()).isZero();
+    }
+
+    private CompletableFuture<String> waitForLoadThenCoalesce(String key) throws InterruptedException {
+        while (loads.get() == 0) {
+            Thread.sleep(1);
+        }
+        CompletableFuture<String> waiter = CompletableFuture.supplyAsync(() -> singleFlight.load(key, this::blockingLoad));
+        while (meterRegistry.get("test.lookups.coalesced").counter().count() == 0) {
+            Thread.sleep(1);
+        }
+        return waiter;
+    }
+
+    private String blockingLoad() {
+        int load = loads.incrementAndGet();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "value" + load;
+    }
+}
@@ -0,0 +1,64 @@
+package io.coster.usermanagementsvc.services.circuit;
+
+import io.coster.usermanagementsvc.services.circuit.CircuitBreaker.State;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CircuitBreakerTest {
+
+    private static final long OPEN_NANOS = 1000;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CircuitBreaker breaker = new CircuitBreaker("test", 3, OPEN_NANOS, meterRegistry);
+
+    @Test
+    public void consecutiveFailures_OpenAfterThresholdAndRejectUntilOpenTimePassed() {
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        breaker.onSuccess();
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        assertThat(breaker.tryAcquire(0)).isTrue();
+
+        breaker.onFailure(10);
+
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+        assertThat(breaker.tryAcquire(10 + OPEN_NANOS - 1)).isFalse();
+        assertThat(meterRegistry.get("test.circuit.rejected").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("test.circuit.state").tag("state", "open").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    public void halfOpen_OneProbeLetThroughAndItsSuccessCloses() {
+        open(0);
+
+        assertThat(breaker.tryAcquire(OPEN_NANOS)).isTrue();
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        assertThat(breaker.tryAcquire(OPEN_NANOS)).isFalse();
+
+        breaker.onSuccess();
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+        assertThat(breaker.tryAcquire(OPEN_NANOS)).isTrue();
+    }
+
+    @Test
+    public void halfOpen_FailedProbeOpensAgain() {
+        open(0);
+        assertThat(breaker.tryAcquire(OPEN_NANOS)).isTrue();
+
+        breaker.onFailure(OPEN_NANOS);
+
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+        assertThat(breaker.tryAcquire(2 * OPEN_NANOS - 1)).isFalse();
+        assertThat(breaker.tryAcquire(2 * OPEN_NANOS)).isTrue();
+    }
+
+    private void open(long now) {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure(now);
+        }
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+    }
+}
@@ -0,0 +1,123 @@
+package io.coster.usermanagementsvc.services.degraded;
+
+import io.coster.usermanagementsvc.metrics.StatementCounter;
+import io.coster.usermanagementsvc.services.exceptions.DatabaseDegraded;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DegradedModeTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StatementCounter statementCounter = new StatementCounter();
+    private final DegradedMode degradedMode = new DegradedMode(true, 50, 1, 1, 2, statementCounter, meterRegistry);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        degradedMode.shutdown();
+    }
+
+    @Test
+    public void slowLookup_DegradedUntilLookupsReachDatabaseInTime() {
+        assertThatThrownBy(() -> degradedMode.await(this::blockingLookup)).isInstanceOf(DatabaseDegraded.class);
+        assertThat(degradedMode.isDegraded()).isTrue();
+        assertThat(degradedMode.getDegradation().getReason()).contains("50 ms");
+
+        // the single lookup thread finishes the late lookup first, then answers one from memory
+        release.countDown();
+        assertThat(degradedMode.await(() -> "token")).isEqualTo("token");
+        assertThat(degradedMode.isDegraded()).isTrue();
+
+        degradedMode.await(this::databaseLookup);
+        assertThat(degradedMode.isDegraded()).isTrue();
+        degradedMode.await(this::databaseLookup);
+        assertThat(degradedMode.isDegraded()).isFalse();
+    }
+
+    @Test
+    public void lateLookup_StartsRecoveryOver() {
+        assertThatThrownBy(() -> degradedMode.await(() -> {
+            throw new QueryTimeoutException("statement timeout");
+        })).isInstanceOf(DatabaseDegraded.class);
+        degradedMode.await(this::databaseLookup);
+
+        assertThatThrownBy(() -> degradedMode.await(() -> {
+            blockingLookup();
+            return databaseLookup();
+        })).isInstanceOf(DatabaseDegraded.class);
+        release.countDown();
+        degradedMode.await(this::databaseLookup);
+        assertThat(degradedMode.isDegraded()).isTrue();
+
+        degradedMode.await(this::databaseLookup);
+        assertThat(degradedMode.isDegraded()).isFalse();
+    }
+
+    @Test
+    public void databaseFailure_Degraded() {
+        assertThatThrownBy(() -> degradedMode.await(() -> {
+            throw new QueryTimeoutException("statement timeout");
+        })).isInstanceOf(DatabaseDegraded.class);
+        assertThat(degradedMode.isDegraded()).isTrue();
+
+        assertThat(degradedMode.await(this::databaseLookup)).isEqualTo("token");
+        assertThat(degradedMode.await(this::databaseLookup)).isEqualTo("token");
+        assertThat(degradedMode.isDegraded()).isFalse();
+    }
+
+    @Test
+    public void otherFailure_RethrownWithoutDegrading() {
+        assertThatThrownBy(() -> degradedMode.await(() -> {
+            throw new IllegalArgumentException("bug");
+        })).isInstanceOf(IllegalArgumentException.class);
+        assertThat(degradedMode.isDegraded()).isFalse();
+    }
+
+    @Test
+    public void fullQueue_DegradedWithoutWaiting() throws Exception {
+        // one running, one queued
+        degradedMode.refresh("first", this::blockingLookup);
+        started.await();
+        degradedMode.refresh("second", this::blockingLookup);
+
+        assertThatThrownBy(() -> degradedMode.await(() -> "token")).isInstanceOf(DatabaseDegraded.class);
+        assertThat(meterRegistry.get("auth.degraded.lookup.failures").tag("cause", "rejected").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void statementsOfLookup_CountedForCaller() {
+        statementCounter.reset();
+        degradedMode.await(() -> {
+            statementCounter.increment();
+            statementCounter.increment();
+            return "token";
+        });
+
+        assertThat(statementCounter.getCount()).isEqualTo(2);
+    }
+
+    private String databaseLookup() {
+        statementCounter.increment();
+        return "token";
+    }
+
+    private String blockingLookup() {
+        started.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "token";
+    }
+}
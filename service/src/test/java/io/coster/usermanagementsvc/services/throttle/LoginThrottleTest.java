@@ -0,0 +1,75 @@
+package io.coster.usermanagementsvc.services.throttle;
+
+import io.coster.usermanagementsvc.services.exceptions.TooManyAttempts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LoginThrottleTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LoginThrottle throttle = new LoginThrottle(meterRegistry, true, 3, 6, 5, 60, 1000, now::get);
+
+    @Test
+    public void acquire_BurstOfFailuresPerUserAllowedThenRejectedUntilRefilled() {
+        for (int i = 0; i < 3; i++) {
+            throttle.acquire("user@test.com", "client-" + i);
+            throttle.failed("user@test.com");
+        }
+        assertThatThrownBy(() -> throttle.acquire("USER@test.com", "client-3"))
+                .isInstanceOf(TooManyAttempts.class)
+                .hasFieldOrPropertyWithValue("retryAfterSeconds", 10L);
+        throttle.acquire("other@test.com", "client-3");
+
+        // one failed attempt every 10 seconds
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        throttle.acquire("user@test.com", "client-4");
+        throttle.failed("user@test.com");
+        assertThatThrownBy(() -> throttle.acquire("user@test.com", "client-4")).isInstanceOf(TooManyAttempts.class);
+
+        assertThat(meterRegistry.get("auth.throttle.rejections").tag("key", "user").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void acquire_SuccessfulAttemptsNotChargedToUser() {
+        for (int i = 0; i < 10; i++) {
+            throttle.acquire("user@test.com", "client-" + i);
+        }
+        throttle.failed("user@test.com");
+        throttle.acquire("user@test.com", "client-10");
+    }
+
+    @Test
+    public void acquire_BurstPerClientAllowedThenRejected() {
+        for (int i = 0; i < 5; i++) {
+            throttle.acquire("user" + i + "@test.com", "client");
+        }
+        assertThatThrownBy(() -> throttle.acquire("user5@test.com", "client"))
+                .isInstanceOf(TooManyAttempts.class)
+                .hasFieldOrPropertyWithValue("retryAfterSeconds", 1L);
+
+        // the rejected attempt was not charged to the user
+        for (int i = 0; i < 3; i++) {
+            throttle.acquire("user5@test.com", "other-client");
+            throttle.failed("user5@test.com");
+        }
+
+        assertThat(meterRegistry.get("auth.throttle.rejections").tag("key", "client").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void acquire_Disabled_NeverRejects() {
+        LoginThrottle disabled = new LoginThrottle(meterRegistry, false, 1, 1, 1, 1, 1000, now::get);
+
+        for (int i = 0; i < 10; i++) {
+            disabled.acquire("user@test.com", "client");
+            disabled.failed("user@test.com");
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package io.coster.usermanagementsvc.services.tokens;
+
+import io.coster.usermanagementsvc.domain.AuthToken;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemoryTokenStoreTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+    private final MapTokenStore delegate = new MapTokenStore();
+    private final InMemoryTokenStore store = new InMemoryTokenStore(delegate, 4, new SimpleMeterRegistry());
+
+    @Test
+    public void putUuidToken_ServedFromMemory() {
+        AuthToken token = token("user@test.com", UUID.randomUUID().toString(), NOW.plusHours(1));
+        store.put(token);
+
+        assertThat(store.find("user@test.com")).hasValueSatisfying(found -> {
+            assertThat(found.getAuthToken()).isEqualTo(token.getAuthToken());
+            assertThat(found.getIssued()).isEqualTo(token.getIssued());
+            assertThat(found.getExpiry()).isEqualTo(token.getExpiry());
+        });
+        assertThat(delegate.finds.get()).isZero();
+        assertThat(delegate.tokens).containsKey("user@test.com");
+    }
+
+    @Test
+    public void putManyTokens_AllFoundAfterGrowing() {
+        Map<String, String> tokens = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            String token = UUID.randomUUID().toString();
+            tokens.put("user" + i + "@test.com", token);
+            store.put(token("user" + i + "@test.com", token, NOW.plusHours(1)));
+        }
+
+        tokens.forEach((userId, token) ->
+                assertThat(store.find(userId)).map(AuthToken::getAuthToken).contains(token));
+        assertThat(delegate.finds.get()).isZero();
+    }
+
+    @Test
+    public void putNonUuidToken_ServedFromDelegate() {
+        store.put(token("user@test.com", UUID.randomUUID().toString(), NOW.plusHours(1)));
+        store.put(token("user@test.com", "v1.key.payload.signature", NOW.plusHours(1)));
+
+        assertThat(store.find("user@test.com")).map(AuthToken::getAuthToken).contains("v1.key.payload.signature");
+        assertThat(delegate.finds.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void findMissingToken_LoadedFromDelegateOnce() {
+        String token = UUID.randomUUID().toString();
+        delegate.put(token("user@test.com", token, NOW.plusHours(1)));
+
+        assertThat(store.find("user@test.com")).map(AuthToken::getAuthToken).contains(token);
+        assertThat(store.find("user@test.com")).map(AuthToken::getAuthToken).contains(token);
+        assertThat(delegate.finds.get()).isEqualTo(1);
+
+        // only the user without a token is looked up again
+        assertThat(store.findAll(Arrays.asList("user@test.com", "nobody@test.com"))).containsOnlyKeys("user@test.com");
+        assertThat(delegate.finds.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void replaceWithPreviousToken_OnlyReplacedIfMatching() {
+        String previous = UUID.randomUUID().toString();
+        store.insert(token("user@test.com", previous, NOW.plusHours(1)));
+        String next = UUID.randomUUID().toString();
+
+        assertThat(store.replace("not-the-token", token("user@test.com", next, NOW.plusHours(1)))).isFalse();
+        assertThat(store.find("user@test.com")).map(AuthToken::getAuthToken).contains(previous);
+
+        assertThat(store.replace(previous, token("user@test.com", next, NOW.plusHours(1)))).isTrue();
+        assertThat(store.find("user@test.com")).map(AuthToken::getAuthToken).contains(next);
+    }
+
+    @Test
+    public void deleteExpired_RemovedFromMemoryAndDelegate() {
+        for (int i = 0; i < 100; i++) {
+            LocalDateTime expiry = i % 2 == 0 ? NOW.minusHours(1) : NOW.plusHours(1);
+            store.put(token("user" + i + "@test.com", UUID.randomUUID().toString(), expiry));
+        }
+
+        assertThat(store.deleteExpired(NOW, 1000)).isEqualTo(50);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(store.find("user" + i + "@test.com").isPresent()).isEqualTo(i % 2 == 1);
+        }
+    }
+
+    @Test
+    public void deleteExpiredFromLargeTable_RemovedFromEveryChunk() {
+        for (int i = 0; i < 20_000; i++) {
+            LocalDateTime expiry = i % 2 == 0 ? NOW.minusHours(1) : NOW.plusHours(1);
+            store.put(token("user" + i + "@test.com", UUID.randomUUID().toString(), expiry));
+        }
+
+        assertThat(store.deleteExpired(NOW, 100_000)).isEqualTo(10_000);
+
+        for (int i = 0; i < 20_000; i++) {
+            assertThat(store.find("user" + i + "@test.com").isPresent()).isEqualTo(i % 2 == 1);
+        }
+        assertThat(delegate.finds.get()).isEqualTo(10_000);
+    }
+
+    @Test
+    public void deleteExpiredInBatchesOfOneRun_TableSweptOnce() {
+        store.put(token("first@test.com", UUID.randomUUID().toString(), NOW.minusHours(1)));
+        store.deleteExpired(NOW, 1);
+        assertThat(store.find("first@test.com")).isEmpty();
+
+        // left in memory by the following batches of the run
+        store.put(token("second@test.com", UUID.randomUUID().toString(), NOW.minusHours(1)));
+        store.deleteExpired(NOW, 1);
+        assertThat(store.find("second@test.com")).isPresent();
+
+        store.deleteExpired(NOW.plusMinutes(10), 1);
+        assertThat(store.find("second@test.com")).isEmpty();
+    }
+
+    private static AuthToken token(String userId, String token, LocalDateTime expiry) {
+        return AuthToken.builder()
+                .userId(userId)
+                .authToken(token)
+                .issued(NOW)
+                .expiry(expiry).build();
+    }
+
+    private static class MapTokenStore implements TokenStore {
+
+        private final Map<String, AuthToken> tokens = new HashMap<>();
+        private final AtomicInteger finds = new AtomicInteger();
+
+        @Override
+        public Optional<AuthToken> find(String userId) {
+            finds.incrementAndGet();
+            return Optional.ofNullable(tokens.get(userId));
+        }
+
+        @Override
+        public Map<String, AuthToken> findAll(Collection<String> userIds) {
+            Map<String, AuthToken> found = new HashMap<>();
+            userIds.forEach(userId -> find(userId).ifPresent(token -> found.put(userId, token)));
+            return found;
+        }
+
+        @Override
+        public void insert(AuthToken token) {
+            tokens.put(token.getUserId(), token);
+        }
+
+        @Override
+        public void put(AuthToken token) {
+            tokens.put(token.getUserId(), token);
+        }
+
+        @Override
+        public boolean replace(String previousToken, AuthToken token) {
+            AuthToken current = tokens.get(token.getUserId());
+            if (current == null || !current.getAuthToken().equals(previousToken)) {
+                return false;
+            }
+            tokens.put(token.getUserId(), token);
+            return true;
+        }
+
+        @Override
+        public int deleteExpired(LocalDateTime now, int limit) {
+            int before = tokens.size();
+            tokens.values().removeIf(token -> token.getExpiry().isBefore(now));
+            return before - tokens.size();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package io.coster.usermanagementsvc.services.tokens;
+
+import io.coster.usermanagementsvc.services.events.LocalInvalidationBus;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SignedTokenCodecTest {
+
+    private static final String OLD_KEY = "k1:c2VjcmV0LWtleS1udW1iZXItb25lLWZvci10ZXN0cw==";
+    private static final String NEW_KEY = "k2:c2VjcmV0LWtleS1udW1iZXItdHdvLWZvci10ZXN0cw==";
+
+    @Test
+    public void issuedToken_VerifiesWithSameContents() {
+        SignedTokenCodec codec = new SignedTokenCodec(OLD_KEY, "k1");
+        Instant issued = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Instant expiry = issued.plus(1, ChronoUnit.HOURS);
+
+        Optional<SignedToken> verified = codec.verify(codec.issue("test@test.com", issued, expiry));
+
+        assertThat(verified).isPresent();
+        assertThat(verified.get().getUserId()).isEqualTo("test@test.com");
+        assertThat(verified.get().getIssued()).isEqualTo(issued);
+        assertThat(verified.get().getExpiry()).isEqualTo(expiry);
+    }
+
+    @Test
+    public void tamperedToken_DoesNotVerify() {
+        SignedTokenCodec codec = new SignedTokenCodec(OLD_KEY, "k1");
+        String token = codec.issue("test@test.com", Instant.now(), Instant.now().plus(1, ChronoUnit.HOURS));
+        String[] parts = token.split("\\.");
+        String forged = codec.issue("other@test.com", Instant.now(), Instant.now().plus(1, ChronoUnit.HOURS));
+
+        assertThat(codec.verify(parts[0] + "." + parts[1] + "." + forged.split("\\.")[2] + "." + parts[3])).isEmpty();
+        assertThat(codec.verify("v1.k1.garbage")).isEmpty();
+        assertThat(codec.verify("abcd-efgh1000")).isEmpty();
+    }
+
+    @Test
+    public void tokenSignedWithOldKey_VerifiesAfterRotation() {
+        SignedTokenCodec before = new SignedTokenCodec(OLD_KEY, "k1");
+        SignedTokenCodec after = new SignedTokenCodec(OLD_KEY + "," + NEW_KEY, "k2");
+        SignedTokenCodec retired = new SignedTokenCodec(NEW_KEY, "k2");
+        String token = before.issue("test@test.com", Instant.now(), Instant.now().plus(1, ChronoUnit.HOURS));
+
+        assertThat(after.verify(token)).isPresent();
+        assertThat(retired.verify(token)).isEmpty();
+    }
+
+    @Test
+    public void tokenIssuedBeforeRevocation_IsRevoked() {
+        SignedTokenCodec codec = new SignedTokenCodec(OLD_KEY, "k1");
+        TokenRevocationList revocationList = new TokenRevocationList(24, TokenMode.OPAQUE, null, new LocalInvalidationBus());
+        Instant issued = Instant.now();
+        SignedToken old = codec.verify(codec.issue("test@test.com", issued, issued.plus(1, ChronoUnit.HOURS))).get();
+        Instant replaced = issued.plusMillis(5);
+        SignedToken current = codec.verify(codec.issue("test@test.com", replaced, replaced.plus(1, ChronoUnit.HOURS))).get();
+
+        revocationList.revokeIssuedBefore("test@test.com", replaced);
+
+        assertThat(revocationList.isRevoked(old)).isTrue();
+        assertThat(revocationList.isRevoked(current)).isFalse();
+    }
+}